@@ -0,0 +1,29 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the usual JMH command-line options, but always with the GC profiler,
+ * so that allocation rates are reported alongside throughput. For example, {@code java -jar
+ * target/benchmarks.jar SearchBenchmark -p lives=6} runs just the search benchmarks with 6 lives.
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+    if (commandLine.shouldList() || commandLine.shouldListWithParams()) {
+      new Runner(commandLine).list();
+      return;
+    }
+    Options options =
+        new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build();
+    new Runner(options).run();
+  }
+}
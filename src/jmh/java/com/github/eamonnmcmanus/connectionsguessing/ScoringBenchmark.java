@@ -0,0 +1,70 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the scoring primitives: scoring one connection against a guess, splitting a whole
+ * universe by a guess, and iterating over a universe. The {@code universe} parameter is one of the
+ * universes that {@link ConnectionsGuessing#searchAbcd} starts with, or all 35 A-connections.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoringBenchmark {
+  @Param({"ALL", "ONE_AWAY", "TWO_AWAY"})
+  public String universe;
+
+  private ConnectionSet universeSet;
+  private Connection[] universeArray;
+  private Connection guess;
+
+  @Setup
+  public void setUp() {
+    var scores = ConnectionSet.ALL_A_CONNECTIONS.scoresFor(Connection.fromString("ABCD"));
+    universeSet =
+        universe.equals("ALL")
+            ? ConnectionSet.ALL_A_CONNECTIONS
+            : scores.get(Score.valueOf(universe));
+    universeArray = universeSet.toArray(new Connection[0]);
+    guess = Connection.fromString("ABEF");
+  }
+
+  @Benchmark
+  public void scoreFor(Blackhole blackhole) {
+    for (Connection connection : universeArray) {
+      blackhole.consume(connection.scoreFor(guess));
+    }
+  }
+
+  @Benchmark
+  public Object scoresFor() {
+    return universeSet.scoresFor(guess);
+  }
+
+  @Benchmark
+  public int iterate() {
+    int sum = 0;
+    for (Connection connection : universeSet) {
+      sum += connection.bits();
+    }
+    return sum;
+  }
+}
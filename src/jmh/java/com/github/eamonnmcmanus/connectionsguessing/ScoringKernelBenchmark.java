@@ -0,0 +1,69 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar and vector {@link ScoringKernel} implementations. {@code scoreConnections}
+ * scores a guess against the 35 A-connections, and {@code splitFullGame} scores a guess against a
+ * whole {@link FullGame} universe, which is the guess-evaluation loop of that engine. The {@code
+ * universe} parameter is every partition, or those that are ONE_AWAY from ABCD. The vector kernel
+ * is only included if the benchmarks are built with {@code mvn -Pjmh,vector package}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class ScoringKernelBenchmark {
+  @Param({"scalar", "vector"})
+  public String kernel;
+
+  @Param({"ALL", "ONE_AWAY"})
+  public String universe;
+
+  private ScoringKernel scoringKernel;
+  private long[] fullGameUniverse;
+  private final long[] masks = new long[3];
+  private int guessBits;
+  private int fullGameGuess;
+
+  @Setup
+  public void setUp() {
+    scoringKernel =
+        kernel.equals("vector")
+            ? ScoringKernel.vector()
+                .orElseThrow(() -> new IllegalStateException("Build with -Pjmh,vector"))
+            : ScoringKernel.scalar();
+    fullGameUniverse = FullGame.all();
+    if (universe.equals("ONE_AWAY")) {
+      fullGameUniverse = FullGame.filter(fullGameUniverse, 0, Score.ONE_AWAY);
+    }
+    guessBits = Connection.fromString("ABEF").bits();
+    fullGameGuess = FullGame.guess("ABEF");
+  }
+
+  @Benchmark
+  public long scoreConnections() {
+    scoringKernel.scoreConnections(guessBits, masks);
+    return masks[0] ^ masks[1] ^ masks[2];
+  }
+
+  @Benchmark
+  public Object splitFullGame() {
+    return FullGame.split(fullGameUniverse, fullGameGuess, scoringKernel);
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the search itself. The transposition table is cleared before every invocation, so
+ * each one measures a complete search rather than a lookup of the previous result.
+ *
+ * <p>The {@code engine} parameter is either {@code plain}, which is the search with only the
+ * transposition table, or {@code optimized}, which also turns on {@link
+ * ConnectionsGuessing#exploitSymmetry()}, {@link ConnectionsGuessing#branchAndBound()}, and {@link
+ * ConnectionsGuessing#dedupeGuesses()}. Neither is {@linkplain ConnectionsGuessing#parallel()
+ * parallel}, so the results measure the work done by one thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+  @Param({"4", "5", "6"})
+  public int lives;
+
+  @Param({"plain", "optimized"})
+  public String engine;
+
+  private ConnectionsGuessing guessing;
+  private ConnectionSet oneAway;
+  private ConnectionSet twoAway;
+
+  @Setup
+  public void setUp() {
+    var builder = ConnectionsGuessing.builder();
+    switch (engine) {
+      case "plain" -> {}
+      case "optimized" -> builder.exploitSymmetry(true).branchAndBound(true).dedupeGuesses(true);
+      default -> throw new IllegalArgumentException("Unknown engine " + engine);
+    }
+    guessing = builder.build();
+    var scores = ConnectionSet.ALL_A_CONNECTIONS.scoresFor(Connection.fromString("ABCD"));
+    oneAway = scores.get(Score.ONE_AWAY);
+    twoAway = scores.get(Score.TWO_AWAY);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTable() {
+    guessing.transpositionTable().clear();
+  }
+
+  @Benchmark
+  public int searchAbcd() {
+    return guessing.searchAbcd(lives);
+  }
+
+  /** Searches the 16 connections that are one away from ABCD. */
+  @Benchmark
+  public int searchOneAway() {
+    return guessing.search(oneAway, lives - 1);
+  }
+
+  /** Searches the 18 connections that are two away from ABCD. */
+  @Benchmark
+  public int searchTwoAway() {
+    return guessing.search(twoAway, lives - 1);
+  }
+}
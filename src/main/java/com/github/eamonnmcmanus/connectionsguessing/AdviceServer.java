@@ -0,0 +1,190 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.github.eamonnmcmanus.connectionsguessing.GuessAdvisor.Advice;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small server that answers {@link GuessAdvisor} queries over TCP on the loopback interface.
+ * Each client connection is handled on its own virtual thread, so thousands of clients can be
+ * waiting on the server without thousands of platform threads. All connections share one advisor,
+ * so advice that one client has asked for is a map lookup for every other client, and advice that
+ * several clients ask for at the same time is computed only once.
+ *
+ * <p>The protocol is one request per line, with one response line per request. A request is
+ * either
+ *
+ * <pre>
+ * UNIVERSE mask lives
+ * HISTORY lives guess:SCORE guess:SCORE...
+ * </pre>
+ *
+ * where {@code mask} is a decimal mask over the {@linkplain PartitionTable A-connections}, each
+ * {@code guess} is a connection such as {@code ABCD}, and each {@code SCORE} is {@code ONE_AWAY}
+ * or {@code TWO_AWAY}. A {@code HISTORY} request starts with every connection possible and {@code
+ * lives} lives, and replays the guesses and responses, as {@link GuessingSession} does. The
+ * response is
+ *
+ * <pre>
+ * OK guess solvable
+ * </pre>
+ *
+ * with the best next guess, such as {@code ABCD}, and how many of the possible connections it
+ * guarantees to find. If the request is not valid, the response is {@code ERROR} followed by a
+ * message.
+ */
+final class AdviceServer implements Closeable {
+  private final GuessAdvisor advisor;
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+  private AdviceServer(GuessAdvisor advisor, ServerSocket serverSocket) {
+    this.advisor = advisor;
+    this.serverSocket = serverSocket;
+  }
+
+  /**
+   * Starts a server on the given port of the loopback interface, or on any free port if {@code
+   * port} is 0.
+   */
+  static AdviceServer start(GuessAdvisor advisor, int port) throws IOException {
+    var serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    var server = new AdviceServer(advisor, serverSocket);
+    server.executor.execute(server::acceptLoop);
+    return server;
+  }
+
+  int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        clients.add(socket);
+        if (serverSocket.isClosed()) {
+          // close() may have already closed the other clients, so it won't see this one.
+          socket.close();
+          return;
+        }
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        // The server socket was closed, or the client went away before we could accept it.
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket;
+        var in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        var out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+      for (String line; (line = in.readLine()) != null; ) {
+        out.println(handle(line));
+        out.flush();
+      }
+    } catch (IOException e) {
+      // The client went away, or the server is closing.
+    } finally {
+      clients.remove(socket);
+    }
+  }
+
+  /** Returns the response line for the given request line. */
+  String handle(String request) {
+    try {
+      String[] words = request.trim().split(" +");
+      Advice advice =
+          switch (words[0]) {
+            case "UNIVERSE" -> {
+              if (words.length != 3) {
+                throw new IllegalArgumentException("Expected UNIVERSE mask lives");
+              }
+              yield advisor.advise(Long.parseLong(words[1]), Integer.parseInt(words[2]));
+            }
+            case "HISTORY" -> {
+              if (words.length < 2) {
+                throw new IllegalArgumentException("Expected HISTORY lives guess:SCORE...");
+              }
+              var session = new GuessingSession(advisor, Integer.parseInt(words[1]));
+              for (int i = 2; i < words.length; i++) {
+                String[] guessAndScore = words[i].split(":");
+                if (guessAndScore.length != 2) {
+                  throw new IllegalArgumentException("Expected guess:SCORE: " + words[i]);
+                }
+                session.record(
+                    Connection.fromString(guessAndScore[0]), Score.valueOf(guessAndScore[1]));
+              }
+              yield session.advice();
+            }
+            default -> throw new IllegalArgumentException("Unknown request " + words[0]);
+          };
+      return "OK " + PartitionTable.connection(advice.guess()) + " " + advice.solvable();
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      return "ERROR " + e.getMessage();
+    }
+  }
+
+  /** Stops accepting connections, and closes the connections that are open. */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : clients) {
+      socket.close();
+    }
+    executor.close();
+  }
+
+  /**
+   * Runs a server. The arguments are:
+   *
+   * <ul>
+   *   <li>{@code --port N}, to listen on port N, which is 7070 by default;
+   *   <li>{@code --load-test CLIENTS REQUESTS}, to start a server on a free port, run a {@link
+   *       LoadGenerator} against it with that many clients each sending that many requests, print
+   *       the report, and exit.
+   * </ul>
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = 7070;
+    int loadClients = 0;
+    int loadRequests = 0;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--port" -> port = Integer.parseInt(args[++i]);
+        case "--load-test" -> {
+          loadClients = Integer.parseInt(args[++i]);
+          loadRequests = Integer.parseInt(args[++i]);
+        }
+        default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+      }
+    }
+    if (loadClients > 0) {
+      try (var server = start(GuessAdvisor.create(), 0)) {
+        System.out.println(
+            LoadGenerator.run(server.port(), loadClients, loadRequests, /* seed= */ 1));
+      }
+      return;
+    }
+    try (var server = start(GuessAdvisor.create(), port)) {
+      System.out.println("Listening on port " + server.port());
+      Thread.currentThread().join();
+    }
+  }
+}
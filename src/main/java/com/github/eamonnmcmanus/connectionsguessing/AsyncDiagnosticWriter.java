@@ -0,0 +1,81 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DiagnosticSink} that prints events to a {@link PrintStream} on a background thread. A
+ * search thread that reports an event only queues it. The formatting and the writing, which may
+ * block, happen on the writer's own thread, so they neither slow down the search nor make parallel
+ * search threads wait for each other. Events are printed in the order they were received.
+ */
+final class AsyncDiagnosticWriter implements DiagnosticSink, Closeable {
+  private final PrintStream out;
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("diagnostic-writer").daemon().factory());
+
+  AsyncDiagnosticWriter(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void nonUniverseBetter(NonUniverseBetter event) {
+    executor.execute(() -> out.print(format(event)));
+  }
+
+  /** Waits until every event received so far has been printed. */
+  void flush() {
+    try {
+      executor.submit(out::flush).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Prints every event received so far, and stops the background thread. */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    out.flush();
+  }
+
+  /** Formats the event as a line for the universe and a line for each guess in it. */
+  static String format(NonUniverseBetter event) {
+    StringBuilder sb = new StringBuilder();
+    ConnectionSet universeSet = ConnectionSet.ofAMask(event.universe());
+    sb.append(
+        String.format(
+            "Universe %s lives %d bestNotInUniverse %d for %s -> %s\n",
+            universeSet,
+            event.lives(),
+            event.bestResult(),
+            PartitionTable.connection(event.bestGuess()),
+            universeSet.scoresFor(PartitionTable.connection(event.bestGuess()))));
+    for (Map.Entry<Integer, Integer> entry : event.inUniverseResults().entrySet()) {
+      int guess = entry.getKey();
+      sb.append(
+          String.format(
+              "  %s -> %d; split is %s | %s | %s\n",
+              PartitionTable.connection(guess),
+              entry.getValue(),
+              PartitionTable.connection(guess),
+              ConnectionSet.ofAMask(event.universe() & PartitionTable.oneAwayMask(guess)),
+              ConnectionSet.ofAMask(event.universe() & PartitionTable.twoAwayMask(guess))));
+    }
+    return sb.toString();
+  }
+}
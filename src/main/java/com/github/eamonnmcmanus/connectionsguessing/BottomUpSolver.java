@@ -0,0 +1,168 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An alternative to {@link ConnectionsGuessing#search} that computes the result for every
+ * reachable universe and every number of lives up to a maximum, all at once. Starting from a root
+ * universe, we find every universe that can be reached by splitting it with a sequence of guesses,
+ * breadth first. From {@link PartitionTable#ALL} there are only 15,611 of them. Then we fill in a
+ * table of results, from 1 life up. The result for a universe with <i>L</i> lives only depends on
+ * the results for smaller universes with <i>L</i> - 1 lives, so each number of lives is a single
+ * pass over the universes, and the order of the universes within that pass doesn't matter.
+ *
+ * <p>The top-down search only looks at the universes that it needs, and only for the number of
+ * lives it was asked about. But it reaches the same universes along many different paths, and
+ * {@code main} runs it again for each number of lives. This solver instead does a fixed amount of
+ * work per universe and guess, and then answers any question about the reachable universes with a
+ * lookup.
+ *
+ * <p>Universes are stored in a sorted {@code long[]}, so the index of a universe is found by binary
+ * search. The index of each of the two non-trivial outcomes of each guess is computed once, during
+ * enumeration.
+ */
+final class BottomUpSolver {
+  private static final int NO_UNIVERSE = -1;
+
+  private final boolean onlyGuessUniverse;
+  private final int maxLives;
+
+  /** The reachable universes, in increasing order. */
+  private final long[] universes;
+
+  /**
+   * {@code children[(u * SIZE + guess) * 2]} is the index of the ONE_AWAY universe after {@code
+   * guess} in universe {@code u}, and the next element is the index of the TWO_AWAY universe. An
+   * empty outcome is {@link #NO_UNIVERSE}.
+   */
+  private final int[] children;
+
+  /** {@code best[lives][u]} is the result for universe {@code u} with that many lives. */
+  private final byte[][] best;
+
+  private BottomUpSolver(long root, int maxLives, boolean onlyGuessUniverse) {
+    this.onlyGuessUniverse = onlyGuessUniverse;
+    this.maxLives = maxLives;
+    this.universes = reachableUniverses(root, onlyGuessUniverse);
+    this.children = computeChildren();
+    this.best = new byte[maxLives + 1][];
+    fill();
+  }
+
+  /**
+   * Computes the results for every universe reachable from {@code root} with up to {@code
+   * maxLives} lives. If {@code onlyGuessUniverse} is true, only guesses in the universe are
+   * considered, as for {@link ConnectionsGuessing#onlyGuessUniverse()}.
+   */
+  static BottomUpSolver solve(long root, int maxLives, boolean onlyGuessUniverse) {
+    checkArgument(root != 0 && (root & ~PartitionTable.ALL) == 0, "Bad universe %s", root);
+    checkArgument(maxLives > 0, "Bad lives %s", maxLives);
+    return new BottomUpSolver(root, maxLives, onlyGuessUniverse);
+  }
+
+  /** Returns how many universes are reachable from the root, including the root itself. */
+  int universeCount() {
+    return universes.length;
+  }
+
+  int maxLives() {
+    return maxLives;
+  }
+
+  /**
+   * Returns how many connections from {@code universe} can be guessed with {@code lives} lives,
+   * which is the same as {@link ConnectionsGuessing#search(long, int)}. The universe must be
+   * reachable from the root.
+   */
+  int best(long universe, int lives) {
+    checkArgument(lives > 0 && lives <= maxLives, "Lives out of range: %s", lives);
+    int u = Arrays.binarySearch(universes, universe);
+    checkArgument(u >= 0, "Universe not reachable: %s", universe);
+    return best[lives][u];
+  }
+
+  private static long[] reachableUniverses(long root, boolean onlyGuessUniverse) {
+    long[] queue = new long[64];
+    queue[0] = root;
+    int tail = 1;
+    Set<Long> seen = new HashSet<>();
+    seen.add(root);
+    for (int head = 0; head < tail; head++) {
+      long universe = queue[head];
+      long guesses = onlyGuessUniverse ? universe : PartitionTable.ALL;
+      for (long rest = guesses; rest != 0; rest &= rest - 1) {
+        int guess = Long.numberOfTrailingZeros(rest);
+        for (long child :
+            new long[] {
+              universe & PartitionTable.oneAwayMask(guess),
+              universe & PartitionTable.twoAwayMask(guess)
+            }) {
+          if (child != 0 && seen.add(child)) {
+            if (tail == queue.length) {
+              queue = Arrays.copyOf(queue, tail * 2);
+            }
+            queue[tail++] = child;
+          }
+        }
+      }
+    }
+    long[] result = Arrays.copyOf(queue, tail);
+    Arrays.sort(result);
+    return result;
+  }
+
+  private int[] computeChildren() {
+    int[] result = new int[universes.length * PartitionTable.SIZE * 2];
+    Arrays.fill(result, NO_UNIVERSE);
+    for (int u = 0; u < universes.length; u++) {
+      long universe = universes[u];
+      long guesses = onlyGuessUniverse ? universe : PartitionTable.ALL;
+      for (long rest = guesses; rest != 0; rest &= rest - 1) {
+        int guess = Long.numberOfTrailingZeros(rest);
+        int i = (u * PartitionTable.SIZE + guess) * 2;
+        result[i] = indexOf(universe & PartitionTable.oneAwayMask(guess));
+        result[i + 1] = indexOf(universe & PartitionTable.twoAwayMask(guess));
+      }
+    }
+    return result;
+  }
+
+  private int indexOf(long universe) {
+    return universe == 0 ? NO_UNIVERSE : Arrays.binarySearch(universes, universe);
+  }
+
+  private void fill() {
+    best[1] = new byte[universes.length];
+    Arrays.fill(best[1], (byte) 1);
+    for (int lives = 2; lives <= maxLives; lives++) {
+      byte[] previous = best[lives - 1];
+      byte[] current = new byte[universes.length];
+      for (int u = 0; u < universes.length; u++) {
+        long universe = universes[u];
+        if (Long.bitCount(universe) == 1) {
+          current[u] = 1;
+          continue;
+        }
+        long guesses = onlyGuessUniverse ? universe : PartitionTable.ALL;
+        int bestHere = 0;
+        for (long rest = guesses; rest != 0; rest &= rest - 1) {
+          int guess = Long.numberOfTrailingZeros(rest);
+          int i = (u * PartitionTable.SIZE + guess) * 2;
+          int oneAway = children[i];
+          int twoAway = children[i + 1];
+          int value =
+              ((universe & PartitionTable.matchMask(guess)) != 0 ? 1 : 0)
+                  + (oneAway == NO_UNIVERSE ? 0 : previous[oneAway])
+                  + (twoAway == NO_UNIVERSE ? 0 : previous[twoAway]);
+          bestHere = Math.max(bestHere, value);
+        }
+        current[u] = (byte) bestHere;
+      }
+      best[lives] = current;
+    }
+  }
+}
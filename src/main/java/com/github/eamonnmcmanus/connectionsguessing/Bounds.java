@@ -0,0 +1,102 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Upper bounds on the result of {@link ConnectionsGuessing#search}, as a function only of the size
+ * of the universe and the number of lives. As explained in the README, a guess can at best find one
+ * connection and split the rest of the universe into two non-empty parts, each of which is then
+ * searched with one fewer life. A guess that is not in the universe finds nothing but still splits
+ * the universe. So the bound for {@code n} connections and {@code L} lives is the larger of
+ *
+ * <ul>
+ *   <li>1 + bound(a, L - 1) + bound(b, L - 1), for the best a + b = n - 1; and
+ *   <li>bound(a, L - 1) + bound(b, L - 1), for the best a + b = n with a and b both positive.
+ * </ul>
+ *
+ * <p>With 1 life the bound is 1, and it is never more than {@code n}. Actual universes do not
+ * always split so evenly, so the bound is not always achieved, but when a search finds a guess that
+ * reaches it there is no need to look at any other guess.
+ *
+ * <p>The same reasoning gives lower bounds for the {@linkplain
+ * ConnectionsGuessing.Objective#FEWEST_GUESSES total number of guesses}. Every connection still in
+ * the universe pays for the guess, and the best case is again that the guess finds one connection
+ * and splits the rest as evenly as possible. With no lives left, each connection costs 1.
+ */
+final class Bounds {
+  private Bounds() {}
+
+  /** With this many lives or more, the bound is just the size of the universe. */
+  private static final int MAX_LIVES = PartitionTable.SIZE + 1;
+
+  /** {@code MAX_SOLVABLE[lives][n]} is the upper bound for a universe of size n. */
+  private static final int[][] MAX_SOLVABLE = computeMaxSolvable();
+
+  /** {@code MIN_TOTAL_GUESSES[lives][n]} is the lower bound for a universe of size n. */
+  private static final int[][] MIN_TOTAL_GUESSES = computeMinTotalGuesses();
+
+  /**
+   * Returns an upper bound on how many connections can be found in a universe of the given size
+   * with the given number of lives.
+   */
+  static int maxSolvable(int universeSize, int lives) {
+    checkArgument(
+        universeSize >= 0 && universeSize <= PartitionTable.SIZE, "Bad size %s", universeSize);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    return MAX_SOLVABLE[Math.min(lives, MAX_LIVES)][universeSize];
+  }
+
+  /**
+   * Returns a lower bound on the total number of guesses, over all the connections in a universe of
+   * the given size, with the given number of lives. A connection that is not found costs {@code
+   * lives + 1}.
+   */
+  static int minTotalGuesses(int universeSize, int lives) {
+    checkArgument(
+        universeSize >= 0 && universeSize <= PartitionTable.SIZE, "Bad size %s", universeSize);
+    checkArgument(lives >= 0, "Bad lives %s", lives);
+    return MIN_TOTAL_GUESSES[Math.min(lives, MAX_LIVES)][universeSize];
+  }
+
+  private static int[][] computeMaxSolvable() {
+    int[][] table = new int[MAX_LIVES + 1][PartitionTable.SIZE + 1];
+    for (int n = 1; n <= PartitionTable.SIZE; n++) {
+      table[1][n] = 1;
+    }
+    for (int lives = 2; lives <= MAX_LIVES; lives++) {
+      int[] previous = table[lives - 1];
+      for (int n = 1; n <= PartitionTable.SIZE; n++) {
+        int best = 1;
+        for (int a = 0; a <= n - 1; a++) {
+          best = Math.max(best, 1 + previous[a] + previous[n - 1 - a]);
+        }
+        for (int a = 1; a < n; a++) {
+          best = Math.max(best, previous[a] + previous[n - a]);
+        }
+        table[lives][n] = Math.min(best, n);
+      }
+    }
+    return table;
+  }
+
+  private static int[][] computeMinTotalGuesses() {
+    int[][] table = new int[MAX_LIVES + 1][PartitionTable.SIZE + 1];
+    for (int n = 0; n <= PartitionTable.SIZE; n++) {
+      table[0][n] = n;
+    }
+    for (int lives = 1; lives <= MAX_LIVES; lives++) {
+      int[] previous = table[lives - 1];
+      for (int n = 1; n <= PartitionTable.SIZE; n++) {
+        int best = Integer.MAX_VALUE;
+        for (int a = 0; a <= n - 1; a++) {
+          best = Math.min(best, previous[a] + previous[n - 1 - a]);
+        }
+        for (int a = 1; a < n; a++) {
+          best = Math.min(best, previous[a] + previous[n - a]);
+        }
+        table[lives][n] = n + best;
+      }
+    }
+    return table;
+  }
+}
@@ -6,17 +6,22 @@ import static com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.S
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.lang.Integer.bitCount;
 
+import com.github.eamonnmcmanus.connectionsguessing.DiagnosticSink.NonUniverseBetter;
+import com.github.eamonnmcmanus.connectionsguessing.SearchEvents.GuessSearchEvent;
+import com.github.eamonnmcmanus.connectionsguessing.SearchEvents.SearchEvent;
 import com.google.auto.value.AutoBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.EnumMap;
@@ -24,6 +29,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntSupplier;
 import java.util.stream.IntStream;
 
 /**
@@ -95,16 +105,243 @@ import java.util.stream.IntStream;
  * determine which guess gives us the most solutions within the allowed number of remaining guesses.
  *
  * @param showNonUniverseBetter show cases that produce a better outcome when guessing a connection
- *     that is not in the universe of possible connections than when guessing any connection that is
+ *     that is not in the universe of possible connections than when guessing any connection that
+ *     is. The result of every guess is recorded as the search goes, and each such case is sent to
+ *     the {@code diagnostics} sink.
  * @param onlyGuessUniverse only consider guesses that are in the universe of possible connections
+ * @param transpositionTable records the result of {@link #search} for each universe and number of
+ *     lives, so that it is only computed once. This is usually a {@link TranspositionTable}, or an
+ *     {@link EvictingCache} when memory is limited
+ * @param exploitSymmetry use the {@linkplain Symmetry symmetries} of the problem to try only one
+ *     guess from each class of equivalent guesses, and to share results between equivalent
+ *     universes
+ * @param parallel search the upper levels of the recursion in parallel, in the common {@link
+ *     ForkJoinPool}. The result is the same as for a sequential search.
+ * @param parallelDepthCutoff when {@code parallel} is true, the depth of recursion below which the
+ *     search is sequential. The initial call to {@link #search} or {@link #searchAbcd} is depth 0.
+ * @param branchAndBound try the guesses that split the universe most evenly first, stop as soon as
+ *     a guess reaches the {@linkplain Bounds upper bound} for the universe, and abandon a guess as
+ *     soon as it is clear that it can't beat the best so far. This has no effect when {@code
+ *     showNonUniverseBetter} is true, since then we need the exact result for every guess.
+ * @param dedupeGuesses in each universe, only try one of the guesses that split it in the same
+ *     way. Two guesses are equivalent if they agree on whether they can match, and their ONE_AWAY
+ *     and TWO_AWAY sets are the same, or are the same but swapped, since both sets are then
+ *     searched with the same number of lives. This is independent of the transposition table,
+ *     which only avoids repeating the search of a universe and not the splitting of it.
+ * @param metrics where to record counts and timings of the search. By default this is {@link
+ *     SearchMetrics#disabled()}, which records nothing.
+ * @param persistentCache a cache of search results that outlives this run. It is consulted when
+ *     the transposition table has no entry, and every new result is recorded in it. Results found
+ *     there do not report {@code showNonUniverseBetter} diagnostics again. It is only used with the
+ *     default {@link Objective#MOST_FOUND} objective.
+ * @param objective what the search optimizes. By default this is {@link Objective#MOST_FOUND}.
+ *     Since the transposition table does not record the objective, engines with different
+ *     objectives must not share a table.
+ * @param checkpoint where to record the results of guesses near the top of the search, so that
+ *     they survive if the search is killed and then {@linkplain SearchCheckpoint#resume resumed}.
+ *     The checkpoint also saves the transposition table, which must be the one it was created
+ *     with.
+ * @param diagnostics where {@code showNonUniverseBetter} reports what it finds. By default this is
+ *     {@link DiagnosticSink#standardOutput()}, which prints in the background.
+ * @param inFlightSearches the subproblems being searched right now, by this engine or by others
+ *     that share its transposition table. A thread that reaches a subproblem that another thread
+ *     is already searching waits for that result instead of searching it too.
  */
-public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGuessUniverse) {
-  public static void main(String[] args) {
-    for (int lives = 4; lives <= 6; lives++) {
-      var guessing = builder().showNonUniverseBetter(false).onlyGuessUniverse(false).build();
-      int best = guessing.searchAbcd(lives);
+public record ConnectionsGuessing(
+    boolean showNonUniverseBetter,
+    boolean onlyGuessUniverse,
+    ResultCache transpositionTable,
+    boolean exploitSymmetry,
+    boolean parallel,
+    int parallelDepthCutoff,
+    boolean branchAndBound,
+    boolean dedupeGuesses,
+    SearchMetrics metrics,
+    Optional<PersistentCache> persistentCache,
+    Objective objective,
+    Optional<SearchCheckpoint> checkpoint,
+    DiagnosticSink diagnostics,
+    Optional<InFlightSearches> inFlightSearches) {
+  /**
+   * Canonicalizing a universe means applying all 5040 symmetries to it, which only pays off if the
+   * search below it is big enough. So we only do it when there are at least this many lives.
+   */
+  private static final int CANONICALIZE_MIN_LIVES = 5;
+
+  /**
+   * Prints how many connections can be guessed with 4, 5, and 6 lives. With {@code --stats}, also
+   * prints a summary of the {@linkplain SearchMetrics metrics} for those searches. With
+   * {@code --cache FILE}, uses and updates a {@link PersistentCache} in that file. With
+   * {@code --cache-bytes N}, uses an {@link EvictingCache} of at most N bytes instead of a
+   * {@link TranspositionTable}. With {@code --checkpoint FILE}, writes a {@link SearchCheckpoint}
+   * to that file every minute, or every N seconds with {@code --checkpoint-seconds N}, and with
+   * {@code --resume} also continues from the checkpoint already in the file. With
+   * {@code --bottom-up}, instead uses a {@link BottomUpSolver} to print the results for 1 to
+   * {@value #BOTTOM_UP_MAX_LIVES} lives. With {@code --min-lives}, instead uses {@link Solvability}
+   * to print how many lives are needed to be sure of finding the connections. With
+   * {@code --workers N}, instead shares each search between N
+   * {@linkplain ShardedSearch worker processes}. With {@code --expected}, instead prints the
+   * expected number of guesses with the {@link Objective#FEWEST_GUESSES} objective, and how many
+   * connections are found with each guess.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    boolean stats = false;
+    Path cacheFile = null;
+    long cacheBytes = 0;
+    Path checkpointFile = null;
+    Duration checkpointInterval = SearchCheckpoint.DEFAULT_INTERVAL;
+    boolean resume = false;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--stats" -> stats = true;
+        case "--workers" -> {
+          checkArgument(i + 1 < args.length, "Missing count after --workers");
+          mainSharded(Integer.parseInt(args[++i]));
+          return;
+        }
+        case "--bottom-up" -> {
+          mainBottomUp();
+          return;
+        }
+        case "--min-lives" -> {
+          mainMinimumLives();
+          return;
+        }
+        case "--expected" -> {
+          mainExpectedGuesses();
+          return;
+        }
+        case "--cache" -> {
+          checkArgument(i + 1 < args.length, "Missing file after --cache");
+          cacheFile = Path.of(args[++i]);
+        }
+        case "--cache-bytes" -> {
+          checkArgument(i + 1 < args.length, "Missing size after --cache-bytes");
+          cacheBytes = Long.parseLong(args[++i]);
+        }
+        case "--checkpoint" -> {
+          checkArgument(i + 1 < args.length, "Missing file after --checkpoint");
+          checkpointFile = Path.of(args[++i]);
+        }
+        case "--checkpoint-seconds" -> {
+          checkArgument(i + 1 < args.length, "Missing count after --checkpoint-seconds");
+          checkpointInterval = Duration.ofSeconds(Long.parseLong(args[++i]));
+        }
+        case "--resume" -> resume = true;
+        default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+      }
+    }
+    ResultCache table =
+        cacheBytes > 0 ? EvictingCache.withMaxBytes(cacheBytes) : new TranspositionTable(1 << 20);
+    var metrics = stats ? SearchMetrics.create() : SearchMetrics.disabled();
+    checkArgument(!resume || checkpointFile != null, "--resume needs --checkpoint FILE");
+    // Either resource may be null, in which case try-with-resources skips closing it.
+    try (var cache =
+            cacheFile == null
+                ? null
+                : PersistentCache.open(cacheFile, PersistentCache.DEFAULT_CAPACITY);
+        var checkpoint = openCheckpoint(checkpointFile, checkpointInterval, resume, table)) {
+      var builder =
+          builder()
+              .showNonUniverseBetter(false)
+              .onlyGuessUniverse(false)
+              .transpositionTable(table)
+              .exploitSymmetry(true)
+              .branchAndBound(true)
+              .dedupeGuesses(true)
+              .metrics(metrics);
+      if (cache != null) {
+        builder.persistentCache(cache);
+      }
+      if (checkpoint != null) {
+        builder.checkpoint(checkpoint);
+      }
+      var guessing = builder.build();
+      for (int lives = 4; lives <= 6; lives++) {
+        int best = guessing.searchAbcd(lives);
+        System.out.printf(
+            "With %d lives, number of connections that can be guessed is %d\n", lives, best);
+      }
+      if (stats) {
+        System.out.print(guessing.metricsSummary());
+      }
+    }
+  }
+
+  /**
+   * Returns the checkpoint for {@link #main} to use, which is null if there is no {@code
+   * checkpointFile}. With {@code resume}, the checkpoint is loaded from the file, which also fills
+   * {@code table}.
+   */
+  private static SearchCheckpoint openCheckpoint(
+      Path checkpointFile, Duration checkpointInterval, boolean resume, ResultCache table)
+      throws IOException {
+    if (resume) {
+      var checkpoint =
+          SearchCheckpoint.resume(
+              checkpointFile, checkpointInterval, table, false, Objective.MOST_FOUND);
+      System.out.printf(
+          "Resuming with %d results and %d guess results\n",
+          table.size(), checkpoint.frontierSize());
+      return checkpoint;
+    } else if (checkpointFile != null) {
+      return SearchCheckpoint.start(
+          checkpointFile, checkpointInterval, table, false, Objective.MOST_FOUND);
+    } else {
+      return null;
+    }
+  }
+
+  private static final int BOTTOM_UP_MAX_LIVES = 8;
+
+  private static void mainSharded(int workers) throws IOException, InterruptedException {
+    try (var sharded =
+        new ShardedSearch(workers, ShardedSearch.DEFAULT_EXPAND_DEPTH, false, workers)) {
+      for (int lives = 4; lives <= 6; lives++) {
+        int best = sharded.search(PartitionTable.ALL, lives);
+        System.out.printf(
+            "With %d lives, number of connections that can be guessed is %d\n", lives, best);
+      }
+    }
+  }
+
+  private static void mainMinimumLives() {
+    for (boolean onlyGuessUniverse : new boolean[] {false, true}) {
+      int lives = new Solvability(onlyGuessUniverse).minimumLives(PartitionTable.ALL);
       System.out.printf(
-          "With %d lives, number of connections that can be guessed is %d\n", lives, best);
+          "Lives needed to be sure of finding the connections%s: %d\n",
+          onlyGuessUniverse ? " when only guessing possible connections" : "", lives);
+    }
+  }
+
+  private static void mainExpectedGuesses() {
+    var guessing =
+        builder()
+            .transpositionTable(new TranspositionTable(1 << 20))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .objective(Objective.FEWEST_GUESSES)
+            .build();
+    for (int lives = 4; lives <= 7; lives++) {
+      int[] histogram = guessing.guessHistogram(PartitionTable.ALL, lives);
+      System.out.printf(
+          "With %d lives, expected number of guesses is %.4f; found with each guess %s, not found"
+              + " %d\n",
+          lives,
+          guessing.expectedGuesses(PartitionTable.ALL, lives),
+          Arrays.toString(Arrays.copyOfRange(histogram, 1, lives + 1)),
+          histogram[0]);
+    }
+  }
+
+  private static void mainBottomUp() {
+    var solver = BottomUpSolver.solve(PartitionTable.ALL, BOTTOM_UP_MAX_LIVES, false);
+    System.out.printf("%d reachable universes%n", solver.universeCount());
+    for (int lives = 1; lives <= BOTTOM_UP_MAX_LIVES; lives++) {
+      System.out.printf(
+          "With %d lives, number of connections that can be guessed is %d\n",
+          lives, solver.best(PartitionTable.ALL, lives));
     }
   }
 
@@ -114,13 +351,51 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
 
     Builder onlyGuessUniverse(boolean x);
 
+    Builder transpositionTable(ResultCache x);
+
+    Builder exploitSymmetry(boolean x);
+
+    Builder parallel(boolean x);
+
+    Builder parallelDepthCutoff(int x);
+
+    Builder branchAndBound(boolean x);
+
+    Builder dedupeGuesses(boolean x);
+
+    Builder metrics(SearchMetrics x);
+
+    Builder persistentCache(PersistentCache x);
+
+    Builder objective(Objective x);
+
+    Builder checkpoint(SearchCheckpoint x);
+
+    Builder diagnostics(DiagnosticSink x);
+
+    Builder inFlightSearches(InFlightSearches x);
+
     ConnectionsGuessing build();
   }
 
   static Builder builder() {
     return new AutoBuilder_ConnectionsGuessing_Builder()
         .showNonUniverseBetter(false)
-        .onlyGuessUniverse(false);
+        .onlyGuessUniverse(false)
+        .transpositionTable(new TranspositionTable(TranspositionTable.DEFAULT_CAPACITY))
+        .exploitSymmetry(false)
+        .parallel(false)
+        .parallelDepthCutoff(2)
+        .branchAndBound(false)
+        .dedupeGuesses(false)
+        .metrics(SearchMetrics.disabled())
+        .objective(Objective.MOST_FOUND)
+        .diagnostics(DiagnosticSink.standardOutput());
+  }
+
+  /** Returns a summary of the {@link #metrics()} and of the transposition table. */
+  String metricsSummary() {
+    return metrics.summary(transpositionTable);
   }
 
   /**
@@ -128,10 +403,14 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
    * as any other so there's no reason to look at them all for the first guess.
    */
   int searchAbcd(int lives) {
-    ConnectionSet allAConnections = ConnectionSet.ALL_A_CONNECTIONS;
-    var scores = allAConnections.scoresFor(Connection.fromString("ABCD"));
-    checkState(!scores.get(MATCH).isEmpty());
-    return 1 + search(scores.get(ONE_AWAY), lives - 1) + search(scores.get(TWO_AWAY), lives - 1);
+    int abcd = Connection.fromString("ABCD").aIndex();
+    long universe = PartitionTable.ALL;
+    checkState((universe & PartitionTable.matchMask(abcd)) != 0);
+    int[] group = exploitSymmetry ? Symmetry.stabilizer(Symmetry.ALL, abcd) : Symmetry.IDENTITY;
+    return topLevelSearch(
+        universe,
+        lives,
+        () -> objective.forGuess(universe, abcd) + bothBranches(universe, abcd, lives, group, 0));
   }
 
   /**
@@ -150,27 +429,243 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
    */
   int search(ConnectionSet universe, int lives) {
     checkArgument(!universe.isEmpty());
-    switch (lives) {
-      case 0 -> throw new AssertionError();
-      case 1 -> {
-        return 1;
+    return search(universe.aConnectionMask(), lives);
+  }
+
+  /**
+   * Like {@link #search(ConnectionSet, int)}, but with the universe represented as a mask over the
+   * {@linkplain PartitionTable A-connections}.
+   */
+  int search(long universe, int lives) {
+    checkUniverse(universe);
+    return topLevelSearch(universe, lives, () -> search(universe, lives, null, 0));
+  }
+
+  /**
+   * Computes how many values from {@code universe} can be guessed in at most {@code lives} guesses
+   * if the first guess is {@code guess}, which is an index into {@link
+   * Connection#ALL_A_CONNECTIONS}. The best guesses for a universe are the ones where this is equal
+   * to {@link #search(long, int)}.
+   */
+  int bestForGuess(long universe, int guess, int lives) {
+    checkUniverse(universe);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    if (lives == 1) {
+      int found = (universe & PartitionTable.matchMask(guess)) == 0 ? 0 : 1;
+      return objective.forGuess(universe, guess)
+          + objective.forUnfound(Long.bitCount(universe) - found);
+    }
+    return topLevelSearch(
+        universe, lives, () -> bestForGuess(universe, guess, lives, Symmetry.IDENTITY, 0, -1));
+  }
+
+  /**
+   * Returns the best guess for {@code universe} with {@code lives} guesses, as an index into {@link
+   * Connection#ALL_A_CONNECTIONS}. That is a guess for which {@link #bestForGuess(long, int, int)}
+   * is equal to {@link #search(long, int)}. Where several guesses are equally good, this is the
+   * first of them.
+   */
+  int bestGuess(long universe, int lives) {
+    checkUniverse(universe);
+    if (lives == 1 || Long.bitCount(universe) == 1) {
+      return Long.numberOfTrailingZeros(universe);
+    }
+    int best = search(universe, lives);
+    long candidates = onlyGuessUniverse ? universe : PartitionTable.ALL;
+    for (long rest = candidates; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      if (bestForGuess(universe, guess, lives) == best) {
+        return guess;
       }
     }
+    throw new AssertionError("No guess achieves " + best);
+  }
+
+  /**
+   * Returns the expected number of guesses to find the connection in {@code universe} with {@code
+   * lives} lives, if every connection is equally likely, and counting a connection that is not
+   * found as {@code lives + 1} guesses. The objective must be {@link Objective#FEWEST_GUESSES}.
+   */
+  double expectedGuesses(long universe, int lives) {
+    checkState(objective == Objective.FEWEST_GUESSES, "Objective is %s", objective);
+    return (double) search(universe, lives) / Long.bitCount(universe);
+  }
+
+  /**
+   * Returns how many of the connections in {@code universe} are found with each number of guesses,
+   * when every guess is the {@linkplain #bestGuess best guess}. Element <i>k</i> of the result, for
+   * 1 ≤ <i>k</i> ≤ {@code lives}, is the number found with the <i>k</i>th guess, and element 0 is
+   * the number that are not found at all.
+   */
+  int[] guessHistogram(long universe, int lives) {
+    checkUniverse(universe);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    int[] histogram = new int[lives + 1];
+    addToHistogram(universe, lives, 1, histogram);
+    return histogram;
+  }
+
+  private void addToHistogram(long universe, int lives, int guessNumber, int[] histogram) {
+    if (universe == 0) {
+      return;
+    }
+    if (guessNumber == histogram.length) {
+      histogram[0] += Long.bitCount(universe);
+      return;
+    }
+    int guess = bestGuess(universe, lives);
+    if ((universe & PartitionTable.matchMask(guess)) != 0) {
+      histogram[guessNumber]++;
+    }
+    addToHistogram(
+        universe & PartitionTable.oneAwayMask(guess), lives - 1, guessNumber + 1, histogram);
+    addToHistogram(
+        universe & PartitionTable.twoAwayMask(guess), lives - 1, guessNumber + 1, histogram);
+  }
+
+  private static void checkUniverse(long universe) {
+    checkArgument(
+        universe != 0 && (universe & ~PartitionTable.ALL) == 0, "Bad universe %s", universe);
+  }
+
+  /**
+   * Runs the given search of {@code universe}, in the common {@link ForkJoinPool} if this is a
+   * parallel search or directly otherwise, and records a {@link SearchEvent} for it.
+   */
+  private int topLevelSearch(long universe, int lives, IntSupplier search) {
+    var event = new SearchEvent();
+    event.begin();
+    int result;
+    if (!parallel || ForkJoinTask.inForkJoinPool()) {
+      result = search.getAsInt();
+    } else {
+      result = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(search::getAsInt));
+    }
+    if (event.shouldCommit()) {
+      event.universeSize = Long.bitCount(universe);
+      event.lives = lives;
+      event.result = result;
+      event.commit();
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link #search(ConnectionSet, int)}, but with the universe represented as a mask over the
+   * {@linkplain PartitionTable A-connections}, and with {@code group} being symmetries that are
+   * known to map {@code universe} to itself. If {@code group} is null, we compute it here if
+   * needed.
+   * The {@code depth} is how many levels of recursion there are above this one.
+   */
+  private int search(long universe, int lives, int[] group, int depth) {
+    if (!metrics.enabled()) {
+      return doSearch(universe, lives, group, depth);
+    }
+    metrics.recordSearch(depth, Long.bitCount(universe));
+    long start = System.nanoTime();
+    int result = doSearch(universe, lives, group, depth);
+    metrics.recordSearchTime(lives, System.nanoTime() - start);
+    return result;
+  }
+
+  private int doSearch(long universe, int lives, int[] group, int depth) {
     checkArgument(lives > 0);
-    int universeSize = universe.size();
-    if (universeSize == 1) {
-      return 1;
-    }
-    int best = 0;
-    int bestInUniverse = 0;
-    Connection bestNotInUniverseGuess = null;
-    int bestNotInUniverse = 0;
-    ConnectionSet guesses = onlyGuessUniverse ? universe : ConnectionSet.ALL_A_CONNECTIONS;
-    for (Connection guess : guesses) {
-      int thisBest = bestForGuess(universe, guess, lives);
-      if (thisBest >= best) {
+    int universeSize = Long.bitCount(universe);
+    if (lives == 1 || universeSize == 1) {
+      // Guess any connection in the universe.
+      return objective.forGuess(universe, Long.numberOfTrailingZeros(universe))
+          + objective.forUnfound(universeSize - 1);
+    }
+    long key =
+        exploitSymmetry && lives >= CANONICALIZE_MIN_LIVES
+            ? Symmetry.canonicalize(universe)
+            : universe;
+    boolean usePersistentCache = persistentCache.isPresent() && objective == Objective.MOST_FOUND;
+    int cached = transpositionTable.get(key, lives);
+    if (cached == TranspositionTable.ABSENT && usePersistentCache) {
+      cached = persistentCache.get().get(key, lives, onlyGuessUniverse);
+      if (cached != TranspositionTable.ABSENT) {
+        transpositionTable.put(key, lives, cached);
+      }
+    }
+    if (cached != TranspositionTable.ABSENT) {
+      return cached;
+    }
+    if (inFlightSearches.isEmpty()) {
+      return searchUncached(universe, key, lives, group, depth, usePersistentCache);
+    }
+    return inFlightSearches
+        .get()
+        .search(
+            key,
+            lives,
+            () -> {
+              // Another thread may have finished this search between our lookup and our claim.
+              int recorded = transpositionTable.get(key, lives);
+              return recorded != TranspositionTable.ABSENT
+                  ? recorded
+                  : searchUncached(universe, key, lives, group, depth, usePersistentCache);
+            });
+  }
+
+  /**
+   * Searches {@code universe}, whose result is not in any cache, and records the result under
+   * {@code key}.
+   */
+  private int searchUncached(
+      long universe, long key, int lives, int[] group, int depth, boolean usePersistentCache) {
+    int universeSize = Long.bitCount(universe);
+    if (!exploitSymmetry) {
+      group = Symmetry.IDENTITY;
+    } else if (group == null) {
+      group = Symmetry.automorphisms(Symmetry.ALL, universe);
+    }
+    int best = objective.worst();
+    int bestInUniverse = objective.worst();
+    int bestNotInUniverseGuess = -1;
+    int bestNotInUniverse = objective.worst();
+    long guesses = onlyGuessUniverse ? universe : PartitionTable.ALL;
+    if (group.length > 1) {
+      guesses = orbitRepresentatives(guesses, group);
+    }
+    if (dedupeGuesses) {
+      guesses = distinctSplits(universe, guesses, depth);
+    }
+    int[] guessResults = null;
+    long diagnosticOnly = 0;
+    if (showNonUniverseBetter) {
+      // The diagnostics report every guess in the universe, so also try the ones that symmetry or
+      // deduplication removed. Each has the same result as a guess we already try, so this does
+      // not change the best result.
+      guessResults = new int[PartitionTable.SIZE];
+      diagnosticOnly = universe & ~guesses;
+      guesses |= universe;
+    }
+    boolean prune = branchAndBound && !showNonUniverseBetter;
+    int bound = objective.ideal(universeSize, lives);
+    int[] orderedGuesses = prune ? evenestSplitsFirst(universe, guesses) : inOrder(guesses);
+    int[] results =
+        parallel && depth < parallelDepthCutoff
+            ? bestForGuessesInParallel(universe, guesses, lives, group, depth)
+            : null;
+    for (int guess : orderedGuesses) {
+      if (prune && objective.atLeastAsGood(best, bound)) {
+        // No other guess can do better than this one.
+        break;
+      }
+      int thisBest =
+          results == null
+              ? checkpointedBestForGuess(universe, guess, lives, group, depth, prune ? best : -1)
+              : results[guess];
+      if (guessResults != null) {
+        guessResults[guess] = thisBest;
+        if (metrics.enabled() && (diagnosticOnly & (1L << guess)) != 0) {
+          metrics.recordDiagnosticBestForGuess();
+        }
+      }
+      if (objective.atLeastAsGood(thisBest, best)) {
         best = thisBest;
-        if (universe.contains(guess)) {
+        if ((universe & (1L << guess)) != 0) {
           bestInUniverse = thisBest;
         } else {
           bestNotInUniverse = thisBest;
@@ -178,49 +673,345 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
         }
       }
     }
-    if (showNonUniverseBetter && bestNotInUniverse > bestInUniverse) {
-      System.out.printf(
-          "Universe %s lives %d bestNotInUniverse %d for %s -> %s\n",
-          universe,
-          lives,
-          bestNotInUniverse,
-          bestNotInUniverseGuess,
-          universe.scoresFor(bestNotInUniverseGuess));
-      for (Connection guess : universe) {
-        int thisBest = bestForGuess(universe, guess, lives);
-        var scores = universe.scoresFor(guess);
-        System.out.printf(
-            "  %s -> %d; split is %s | %s | %s\n",
-            guess, thisBest, guess, scores.get(ONE_AWAY), scores.get(TWO_AWAY));
+    if (showNonUniverseBetter && !objective.atLeastAsGood(bestInUniverse, bestNotInUniverse)) {
+      var inUniverseResults = ImmutableMap.<Integer, Integer>builder();
+      for (long rest = universe; rest != 0; rest &= rest - 1) {
+        int guess = Long.numberOfTrailingZeros(rest);
+        inUniverseResults.put(guess, guessResults[guess]);
       }
+      diagnostics.nonUniverseBetter(
+          new NonUniverseBetter(
+              universe,
+              lives,
+              bestNotInUniverseGuess,
+              bestNotInUniverse,
+              inUniverseResults.buildOrThrow()));
+    }
+    transpositionTable.put(key, lives, best);
+    if (usePersistentCache) {
+      persistentCache.get().put(key, lives, onlyGuessUniverse, best);
     }
     return best;
   }
 
-  private int bestForGuess(ConnectionSet universe, Connection guess, int lives) {
-    var scores = universe.scoresFor(guess);
-    var oneAway = scores.get(ONE_AWAY);
-    var twoAway = scores.get(TWO_AWAY);
-    int universeSize = universe.size();
-    if (oneAway.size() == universeSize || twoAway.size() == universeSize) {
-      // No new information from the guess: we would recurse with the same or an empty universe.
-      return 0;
+  /** Removes from {@code guesses} any guess that is equivalent to an earlier one. */
+  private static long orbitRepresentatives(long guesses, int[] group) {
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      if (!Symmetry.isOrbitRepresentative(group, guess)) {
+        // Some symmetry of the universe maps this guess to one we will already try.
+        guesses &= ~(1L << guess);
+      }
+    }
+    return guesses;
+  }
+
+  /**
+   * Removes from {@code guesses} any guess that splits {@code universe} in the same way as an
+   * earlier one, as described for {@link #dedupeGuesses()}.
+   */
+  private long distinctSplits(long universe, long guesses, int depth) {
+    int candidates = Long.bitCount(guesses);
+    long[] oneAways = new long[candidates];
+    long[] twoAways = new long[candidates];
+    boolean[] matches = new boolean[candidates];
+    int distinct = 0;
+    int exact = 0;
+    int mirrored = 0;
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      long oneAway = universe & PartitionTable.oneAwayMask(guess);
+      long twoAway = universe & PartitionTable.twoAwayMask(guess);
+      boolean match = (universe & PartitionTable.matchMask(guess)) != 0;
+      boolean duplicate = false;
+      for (int i = 0; i < distinct && !duplicate; i++) {
+        if (matches[i] == match) {
+          if (oneAways[i] == oneAway && twoAways[i] == twoAway) {
+            exact++;
+            duplicate = true;
+          } else if (oneAways[i] == twoAway && twoAways[i] == oneAway) {
+            mirrored++;
+            duplicate = true;
+          }
+        }
+      }
+      if (duplicate) {
+        guesses &= ~(1L << guess);
+      } else {
+        oneAways[distinct] = oneAway;
+        twoAways[distinct] = twoAway;
+        matches[distinct] = match;
+        distinct++;
+      }
+    }
+    if (metrics.enabled()) {
+      metrics.recordDedupe(depth, candidates, exact, mirrored);
+    }
+    return guesses;
+  }
+
+  private static int[] inOrder(long guesses) {
+    int[] result = new int[Long.bitCount(guesses)];
+    int i = 0;
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      result[i++] = Long.numberOfTrailingZeros(rest);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@code guesses} ordered so that the ones whose ONE_AWAY and TWO_AWAY sets are
+   * closest in size come first. Those are usually the best guesses, and finding a good guess early
+   * means that we can abandon worse guesses sooner. Guesses that split equally well stay in index
+   * order.
+   */
+  private static int[] evenestSplitsFirst(long universe, long guesses) {
+    long[] keys = new long[Long.bitCount(guesses)];
+    int i = 0;
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      int oneAwaySize = Long.bitCount(universe & PartitionTable.oneAwayMask(guess));
+      int twoAwaySize = Long.bitCount(universe & PartitionTable.twoAwayMask(guess));
+      keys[i++] = ((long) Math.abs(oneAwaySize - twoAwaySize) << 8) | guess;
+    }
+    Arrays.sort(keys);
+    int[] result = new int[keys.length];
+    for (i = 0; i < keys.length; i++) {
+      result[i] = (int) (keys[i] & 0xff);
+    }
+    return result;
+  }
+
+  /**
+   * Computes {@link #bestForGuess} for each of the {@code guesses}, each in its own fork/join task.
+   * The result for guess <i>i</i> is in element <i>i</i> of the returned array.
+   */
+  private int[] bestForGuessesInParallel(
+      long universe, long guesses, int lives, int[] group, int depth) {
+    List<RecursiveTask<Integer>> tasks = new ArrayList<>();
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      tasks.add(task(() -> checkpointedBestForGuess(universe, guess, lives, group, depth, -1)));
+    }
+    ForkJoinTask.invokeAll(tasks);
+    int[] results = new int[PartitionTable.SIZE];
+    int i = 0;
+    for (long rest = guesses; rest != 0; rest &= rest - 1) {
+      results[Long.numberOfTrailingZeros(rest)] = tasks.get(i++).join();
+    }
+    return results;
+  }
+
+  /**
+   * Like {@link #bestForGuess(long, int, int, int[], int, int)}, but near the top of the search the
+   * result is looked up in the {@link #checkpoint()} first, and recorded there once it is known. A
+   * result that was abandoned because of the {@code threshold} is not recorded, since it is not
+   * the true result and a caller with a different threshold could not use it.
+   */
+  private int checkpointedBestForGuess(
+      long universe, int guess, int lives, int[] group, int depth, int threshold) {
+    if (checkpoint.isEmpty() || depth >= SearchCheckpoint.FRONTIER_DEPTH) {
+      return bestForGuess(universe, guess, lives, group, depth, threshold);
     }
-    int best = scores.get(MATCH).isEmpty() ? 0 : 1;
-    for (var newUniverse : List.of(oneAway, twoAway)) {
-      if (!newUniverse.isEmpty()) {
-        best += search(newUniverse, lives - 1);
+    int result = checkpoint.get().get(universe, lives, guess);
+    if (result == ResultCache.ABSENT) {
+      result = bestForGuess(universe, guess, lives, group, depth, threshold);
+      if (threshold < 0 || result != objective.worst()) {
+        checkpoint.get().put(universe, lives, guess, result);
       }
     }
+    return result;
+  }
+
+  /**
+   * Computes how many values from {@code universe} can be guessed in at most {@code lives} guesses
+   * if the first guess is {@code guess}, or the equivalent for the {@link #objective()}. If {@code
+   * threshold} is not negative, the caller is only interested in results that are better than it.
+   * Then, as soon as it is clear that the result can't be better, we stop and return {@link
+   * Objective#worst()}.
+   */
+  private int bestForGuess(
+      long universe, int guess, int lives, int[] group, int depth, int threshold) {
+    if (metrics.enabled()) {
+      metrics.recordBestForGuess();
+    }
+    if (depth >= SearchEvents.MAX_GUESS_EVENT_DEPTH) {
+      return doBestForGuess(universe, guess, lives, group, depth, threshold);
+    }
+    var event = new GuessSearchEvent();
+    event.begin();
+    int result = doBestForGuess(universe, guess, lives, group, depth, threshold);
+    if (event.shouldCommit()) {
+      event.guess = PartitionTable.connection(guess).toString();
+      event.depth = depth;
+      event.universeSize = Long.bitCount(universe);
+      event.lives = lives;
+      event.result = result;
+      event.commit();
+    }
+    return result;
+  }
+
+  private int doBestForGuess(
+      long universe, int guess, int lives, int[] group, int depth, int threshold) {
+    long oneAway = universe & PartitionTable.oneAwayMask(guess);
+    long twoAway = universe & PartitionTable.twoAwayMask(guess);
+    if (oneAway == universe || twoAway == universe) {
+      // No new information from the guess: we would recurse with the same or an empty universe.
+      return objective.worst();
+    }
+    int best = objective.forGuess(universe, guess);
+    if (threshold < 0 || (parallel && depth < parallelDepthCutoff)) {
+      return best + bothBranches(universe, guess, lives, group, depth);
+    }
+    // Search the larger branch first. Then the bound for the smaller branch is smaller, so we are
+    // more likely to be able to abandon the guess without searching it.
+    long first = Long.bitCount(oneAway) >= Long.bitCount(twoAway) ? oneAway : twoAway;
+    long second = first ^ oneAway ^ twoAway;
+    int firstBound = objective.ideal(Long.bitCount(first), lives - 1);
+    int secondBound = objective.ideal(Long.bitCount(second), lives - 1);
+    if (objective.atLeastAsGood(threshold, best + firstBound + secondBound)) {
+      return objective.worst();
+    }
+    int[] newGroup = group.length > 1 ? Symmetry.stabilizer(group, guess) : Symmetry.IDENTITY;
+    best += search(first, lives - 1, newGroup, depth + 1);
+    if (objective.atLeastAsGood(threshold, best + secondBound)) {
+      return objective.worst();
+    }
+    if (second != 0) {
+      best += search(second, lives - 1, newGroup, depth + 1);
+    }
     return best;
   }
 
+  /**
+   * Returns the sum of the {@link #search} results for the ONE_AWAY and TWO_AWAY branches of the
+   * given guess. In a parallel search above the cutoff depth, the two branches run in parallel.
+   */
+  private int bothBranches(long universe, int guess, int lives, int[] group, int depth) {
+    long oneAway = universe & PartitionTable.oneAwayMask(guess);
+    long twoAway = universe & PartitionTable.twoAwayMask(guess);
+    // A symmetry that maps the universe and the guess to themselves also maps each new universe to
+    // itself.
+    int[] newGroup = group.length > 1 ? Symmetry.stabilizer(group, guess) : Symmetry.IDENTITY;
+    if (oneAway == 0 || twoAway == 0) {
+      long newUniverse = oneAway | twoAway;
+      return newUniverse == 0 ? 0 : search(newUniverse, lives - 1, newGroup, depth + 1);
+    }
+    if (parallel && depth < parallelDepthCutoff) {
+      var oneAwayTask = task(() -> search(oneAway, lives - 1, newGroup, depth + 1));
+      oneAwayTask.fork();
+      int twoAwayBest = search(twoAway, lives - 1, newGroup, depth + 1);
+      return oneAwayTask.join() + twoAwayBest;
+    }
+    return search(oneAway, lives - 1, newGroup, depth + 1)
+        + search(twoAway, lives - 1, newGroup, depth + 1);
+  }
+
+  private static RecursiveTask<Integer> task(IntSupplier supplier) {
+    return new RecursiveTask<>() {
+      @Override
+      protected Integer compute() {
+        return supplier.getAsInt();
+      }
+    };
+  }
+
   enum Score {
     MATCH,
     ONE_AWAY,
     TWO_AWAY
   }
 
+  /**
+   * What {@link #search} optimizes. The search is the same for each objective: it tries every
+   * guess, combines the results for the ONE_AWAY and TWO_AWAY sets with the guess's own
+   * contribution, and keeps the best. The objective says what the contribution is, which result
+   * is better, and what the ideal result is for {@linkplain Bounds pruning}.
+   */
+  enum Objective {
+    /**
+     * Maximize how many connections are certain to be found within the lives. The result of a
+     * search is that number.
+     */
+    MOST_FOUND {
+      @Override
+      int forGuess(long universe, int guess) {
+        return (universe & PartitionTable.matchMask(guess)) == 0 ? 0 : 1;
+      }
+
+      @Override
+      int forUnfound(int count) {
+        return 0;
+      }
+
+      @Override
+      int worst() {
+        return 0;
+      }
+
+      @Override
+      boolean atLeastAsGood(int a, int b) {
+        return a >= b;
+      }
+
+      @Override
+      int ideal(int universeSize, int lives) {
+        return Bounds.maxSolvable(universeSize, lives);
+      }
+    },
+
+    /**
+     * Minimize the expected number of guesses, with every connection in the universe equally
+     * likely. The result of a search is the total number of guesses over all the connections in
+     * the universe, where a connection that is not found within the lives counts as {@code lives +
+     * 1} guesses. Dividing by the size of the universe gives the {@linkplain
+     * ConnectionsGuessing#expectedGuesses expected number}. Every guess costs one for each
+     * connection that is still possible when it is made.
+     */
+    FEWEST_GUESSES {
+      @Override
+      int forGuess(long universe, int guess) {
+        return Long.bitCount(universe);
+      }
+
+      @Override
+      int forUnfound(int count) {
+        return count;
+      }
+
+      @Override
+      int worst() {
+        return Integer.MAX_VALUE;
+      }
+
+      @Override
+      boolean atLeastAsGood(int a, int b) {
+        return a <= b;
+      }
+
+      @Override
+      int ideal(int universeSize, int lives) {
+        return Bounds.minTotalGuesses(universeSize, lives);
+      }
+    };
+
+    /** Returns the contribution of making {@code guess} in {@code universe}. */
+    abstract int forGuess(long universe, int guess);
+
+    /** Returns the contribution of {@code count} connections that are never found. */
+    abstract int forUnfound(int count);
+
+    /** Returns a result that every real result is at least as good as. */
+    abstract int worst();
+
+    /** Returns true if result {@code a} is at least as good as result {@code b}. */
+    abstract boolean atLeastAsGood(int a, int b);
+
+    /** Returns a result that no universe of the given size can do better than. */
+    abstract int ideal(int universeSize, int lives);
+  }
+
   /** A putative connection of 4 items. This is a set of 4 items out of the possible 8. */
   record Connection(int bits) implements Comparable<Connection> {
     Connection {
@@ -241,13 +1032,35 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
             .filter(connection -> connection.contains(0))
             .collect(toImmutableList());
 
-    private static final ImmutableMap<Connection, Integer> CONNECTION_TO_INDEX =
-        IntStream.range(0, ALL_CONNECTIONS.size())
-            .mapToObj(Integer::valueOf)
-            .collect(toImmutableMap(ALL_CONNECTIONS::get, i -> i));
+    /**
+     * The index in {@link #ALL_CONNECTIONS} of the first A-connection. The A-connections come last,
+     * so the index of an A-connection is this plus its index in {@link #ALL_A_CONNECTIONS}.
+     */
+    static final int FIRST_A_INDEX = ALL_CONNECTIONS.indexOf(ALL_A_CONNECTIONS.get(0));
+
+    /** Maps the bits of each connection to its index in {@link #ALL_CONNECTIONS}. */
+    private static final int[] BITS_TO_INDEX = computeBitsToIndex();
+
+    private static int[] computeBitsToIndex() {
+      int[] result = new int[256];
+      for (int i = 0; i < ALL_CONNECTIONS.size(); i++) {
+        result[ALL_CONNECTIONS.get(i).bits] = i;
+      }
+      return result;
+    }
 
     int index() {
-      return CONNECTION_TO_INDEX.get(this);
+      return BITS_TO_INDEX[bits];
+    }
+
+    /**
+     * Returns the index in {@link #ALL_A_CONNECTIONS} of this connection if it contains A, or of
+     * its complement if not. Either way, guessing that A-connection is the same as guessing this
+     * one.
+     */
+    int aIndex() {
+      int index = index();
+      return index >= FIRST_A_INDEX ? index - FIRST_A_INDEX : FIRST_A_INDEX - 1 - index;
     }
 
     boolean contains(int item) {
@@ -291,11 +1104,24 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
     }
   }
 
+  /**
+   * A set of connections. This is a view over two masks of the kind used by {@link
+   * PartitionTable}: one for the connections that contain A, and one for their complements, which
+   * are the connections that don't. Iteration is in the order of {@link
+   * Connection#ALL_CONNECTIONS}, where the connections without A come first.
+   */
   static class ConnectionSet extends AbstractSet<Connection> {
-    static final ConnectionSet ALL_A_CONNECTIONS =
-        new ConnectionSet(Connection.ALL_A_CONNECTIONS).freeze();
+    static final ConnectionSet ALL_A_CONNECTIONS = ofAMask(PartitionTable.ALL).freeze();
+
+    /** Bit <i>i</i> is set if {@code Connection.ALL_A_CONNECTIONS.get(i)} is in the set. */
+    private long aMask;
+
+    /**
+     * Bit <i>i</i> is set if {@code Connection.ALL_CONNECTIONS.get(i)} is in the set, for {@code
+     * i < FIRST_A_INDEX}.
+     */
+    private long nonAMask;
 
-    private final BitSet connectionBits = new BitSet(Connection.ALL_CONNECTIONS.size());
     private boolean frozen = false;
 
     ConnectionSet() {}
@@ -304,10 +1130,21 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
       addAll(values);
     }
 
+    private ConnectionSet(long aMask, long nonAMask) {
+      this.aMask = aMask;
+      this.nonAMask = nonAMask;
+    }
+
     static ConnectionSet of(Connection... values) {
       return new ConnectionSet(Arrays.asList(values));
     }
 
+    /** Returns a new set containing the A-connections in the given {@link PartitionTable} mask. */
+    static ConnectionSet ofAMask(long aMask) {
+      checkArgument((aMask & ~PartitionTable.ALL) == 0, "Bad mask %s", aMask);
+      return new ConnectionSet(aMask, 0);
+    }
+
     @CanIgnoreReturnValue
     ConnectionSet freeze() {
       frozen = true;
@@ -321,12 +1158,12 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
 
         @Override
         public boolean hasNext() {
-          return connectionBits.nextSetBit(currentIndex + 1) >= 0;
+          return nextIndex(currentIndex + 1) >= 0;
         }
 
         @Override
         public Connection next() {
-          int nextIndex = connectionBits.nextSetBit(currentIndex + 1);
+          int nextIndex = nextIndex(currentIndex + 1);
           if (nextIndex < 0) {
             throw new NoSuchElementException();
           }
@@ -337,51 +1174,109 @@ public record ConnectionsGuessing(boolean showNonUniverseBetter, boolean onlyGue
         @Override
         public void remove() {
           checkState(!frozen);
-          checkState(currentIndex >= 0 && connectionBits.get(currentIndex));
-          connectionBits.clear(currentIndex);
+          checkState(currentIndex >= 0 && containsIndex(currentIndex));
+          clearIndex(currentIndex);
         }
       };
     }
 
+    /** Returns the smallest index {@code >= from} of a connection in this set, or -1. */
+    private int nextIndex(int from) {
+      if (from < Connection.FIRST_A_INDEX) {
+        long rest = nonAMask & (-1L << from);
+        if (rest != 0) {
+          return Long.numberOfTrailingZeros(rest);
+        }
+        from = Connection.FIRST_A_INDEX;
+      }
+      int aFrom = from - Connection.FIRST_A_INDEX;
+      if (aFrom >= PartitionTable.SIZE) {
+        return -1;
+      }
+      long rest = aMask & (-1L << aFrom);
+      return rest == 0 ? -1 : Connection.FIRST_A_INDEX + Long.numberOfTrailingZeros(rest);
+    }
+
+    private boolean containsIndex(int index) {
+      return index < Connection.FIRST_A_INDEX
+          ? (nonAMask & (1L << index)) != 0
+          : (aMask & (1L << (index - Connection.FIRST_A_INDEX))) != 0;
+    }
+
+    private void clearIndex(int index) {
+      if (index < Connection.FIRST_A_INDEX) {
+        nonAMask &= ~(1L << index);
+      } else {
+        aMask &= ~(1L << (index - Connection.FIRST_A_INDEX));
+      }
+    }
+
     @Override
     public int size() {
-      return connectionBits.cardinality();
+      return Long.bitCount(aMask) + Long.bitCount(nonAMask);
+    }
+
+    /**
+     * Returns a mask where bit <i>i</i> is set if {@code Connection.ALL_A_CONNECTIONS.get(i)} is in
+     * this set. Every element of this set must contain A.
+     */
+    long aConnectionMask() {
+      checkState(nonAMask == 0, "Set has non-A connections: %s", this);
+      return aMask;
     }
 
     @Override
     public boolean add(Connection connection) {
       checkState(!frozen);
-      if (connectionBits.get(connection.index())) {
+      int index = connection.index();
+      if (containsIndex(index)) {
         return false;
       }
-      connectionBits.set(connection.index());
+      if (index < Connection.FIRST_A_INDEX) {
+        nonAMask |= 1L << index;
+      } else {
+        aMask |= 1L << (index - Connection.FIRST_A_INDEX);
+      }
       return true;
     }
 
     @Override
     public boolean contains(Object o) {
-      return o instanceof Connection connection && connectionBits.get(connection.index());
+      return o instanceof Connection connection && containsIndex(connection.index());
     }
 
     @Override
     public boolean remove(Object o) {
       checkState(!frozen);
-      if (o instanceof Connection connection && connectionBits.get(connection.index())) {
-        connectionBits.clear(connection.index());
+      if (o instanceof Connection connection && containsIndex(connection.index())) {
+        clearIndex(connection.index());
         return true;
       }
       return false;
     }
 
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof ConnectionSet that) {
+        return aMask == that.aMask && nonAMask == that.nonAMask;
+      }
+      return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+      return super.hashCode();
+    }
+
     ImmutableMap<Score, ConnectionSet> scoresFor(Connection guess) {
+      int aGuess = guess.aIndex();
       Map<Score, ConnectionSet> map = new EnumMap<>(Score.class);
       for (Score score : Score.values()) {
-        map.put(score, new ConnectionSet());
-      }
-      for (Connection connection : this) {
-        map.get(connection.scoreFor(guess)).add(connection);
+        long scoreMask = PartitionTable.mask(aGuess, score);
+        var set =
+            new ConnectionSet(aMask & scoreMask, nonAMask & PartitionTable.complement(scoreMask));
+        map.put(score, set.freeze());
       }
-      map.values().forEach(ConnectionSet::freeze);
       return Maps.immutableEnumMap(map);
     }
   }
@@ -0,0 +1,58 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Receives diagnostic events from {@link ConnectionsGuessing#search}. The search calls the sink
+ * from deep in the recursion, possibly from several threads at once, so an implementation must be
+ * safe for concurrent use and should return quickly. The default, {@link #standardOutput()},
+ * hands each event to an {@link AsyncDiagnosticWriter} that prints it on a background thread.
+ */
+@FunctionalInterface
+interface DiagnosticSink {
+  /**
+   * Receives a universe where guessing a connection that is not in the universe does better than
+   * guessing any connection that is. This is only reported when {@link
+   * ConnectionsGuessing#showNonUniverseBetter()} is true.
+   */
+  void nonUniverseBetter(NonUniverseBetter event);
+
+  /**
+   * A universe where a guess outside the universe is better than any guess in it.
+   *
+   * @param universe the universe, as a mask over the {@linkplain PartitionTable A-connections}
+   * @param lives the number of lives remaining
+   * @param bestGuess the best guess, which is not in the universe, as an A-connection index
+   * @param bestResult the result of {@code bestGuess}
+   * @param inUniverseResults the result of each guess in the universe, keyed by A-connection index
+   *     in increasing order
+   */
+  record NonUniverseBetter(
+      long universe,
+      int lives,
+      int bestGuess,
+      int bestResult,
+      ImmutableMap<Integer, Integer> inUniverseResults) {}
+
+  /**
+   * Returns a sink that prints events to {@link System#out} in the background. The writer and its
+   * thread are only created when the first event arrives, and events still waiting to be printed
+   * are printed before the JVM exits.
+   */
+  static DiagnosticSink standardOutput() {
+    return event -> StandardOutput.WRITER.nonUniverseBetter(event);
+  }
+
+  /** Holder for the shared writer, so it is created on first use. */
+  final class StandardOutput {
+    private StandardOutput() {}
+
+    static final AsyncDiagnosticWriter WRITER = create();
+
+    private static AsyncDiagnosticWriter create() {
+      var writer = new AsyncDiagnosticWriter(System.out);
+      Runtime.getRuntime().addShutdownHook(new Thread(writer::flush));
+      return writer;
+    }
+  }
+}
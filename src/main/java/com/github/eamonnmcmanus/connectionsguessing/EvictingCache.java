@@ -0,0 +1,261 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ResultCache} with a hard limit on its memory, which makes room for new results by
+ * evicting old ones. {@link TranspositionTable} stops recording results once it is full, which is
+ * fine for the 35-connection problem, where every reachable universe fits. For bigger searches we
+ * want a fixed memory budget, and we want to spend it on the results that would be most expensive
+ * to compute again.
+ *
+ * <p>Like {@link TranspositionTable}, each entry is a single {@code long} in a primitive array,
+ * packing the universe, the lives, and the result. The array is divided into buckets of {@value
+ * #WAYS} slots, and a key can only be in the bucket that it hashes to, so a lookup reads at most
+ * one cache line. When a new entry hashes to a full bucket, it replaces the entry with the lowest
+ * priority, unless its own priority is lower still, in which case it is dropped. The priority
+ * starts as the estimated cost of computing the entry again, which is the size of its universe
+ * times its number of lives, since a search gets more expensive as either grows.
+ *
+ * <p>Each time a bucket is full when an entry is added, whether an entry is evicted or the new one
+ * is dropped, the bucket ages. An entry that has been read since the bucket last aged loses its
+ * "read since" flag, which doubles its priority. An entry that has not been read gets one step
+ * older, and each step halves its priority. Reading an entry makes it new again. This lets a cheap
+ * entry that is used often survive, and lets an expensive entry that is never used age out, so a
+ * bucket full of stale expensive entries still admits results from the part of the search that is
+ * running now. The top bit of each entry is the "read since" flag, and the next {@value
+ * #AGE_BITS} bits are the age.
+ *
+ * <p>The cache is safe for concurrent use. Entries are claimed and replaced with compare-and-set,
+ * and if another thread changes a slot first, the new result is simply dropped.
+ */
+final class EvictingCache implements ResultCache {
+  /** The number of slots in a bucket. 8 {@code long} slots are one 64-byte cache line. */
+  static final int WAYS = 8;
+
+  private static final int UNIVERSE_BITS = 35;
+  private static final int LIVES_BITS = 8;
+  private static final int VALUE_BITS = 16;
+  private static final int AGE_BITS = 4;
+  private static final long UNIVERSE_MASK = (1L << UNIVERSE_BITS) - 1;
+  private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+  private static final int MAX_LIVES = (1 << LIVES_BITS) - 1;
+  private static final long READ = Long.MIN_VALUE;
+  private static final int AGE_SHIFT = VALUE_BITS + UNIVERSE_BITS + LIVES_BITS;
+  private static final long AGE_MASK = ((1L << AGE_BITS) - 1) << AGE_SHIFT;
+  private static final long AGE_ONE = 1L << AGE_SHIFT;
+
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final long[] slots;
+  private final int bucketMask;
+  private final AtomicInteger size = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  private EvictingCache(int slotCount) {
+    this.slots = new long[slotCount];
+    this.bucketMask = slotCount / WAYS - 1;
+  }
+
+  /**
+   * Returns a cache that uses at most {@code maxBytes} bytes for its entries. The number of
+   * entries is the largest power of 2 that fits, and at least {@value #WAYS}.
+   */
+  static EvictingCache withMaxBytes(long maxBytes) {
+    checkArgument(maxBytes > 0, "Bad size %s", maxBytes);
+    return withMaxEntries((int) Math.min(maxBytes / Long.BYTES, 1 << 30));
+  }
+
+  /**
+   * Returns a cache with room for at most {@code maxEntries} entries. The number of entries is the
+   * largest power of 2 that fits, and at least {@value #WAYS}.
+   */
+  static EvictingCache withMaxEntries(int maxEntries) {
+    checkArgument(maxEntries > 0 && maxEntries <= 1 << 30, "Bad size %s", maxEntries);
+    return new EvictingCache(Math.max(Integer.highestOneBit(maxEntries), WAYS));
+  }
+
+  @Override
+  public int get(long universe, int lives) {
+    long key = key(universe, lives);
+    int start = bucketStart(key);
+    for (int i = start; i < start + WAYS; i++) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot != 0 && keyOf(slot) == key) {
+        hits.increment();
+        if ((slot & (READ | AGE_MASK)) != READ) {
+          SLOTS.compareAndSet(slots, i, slot, (slot & ~AGE_MASK) | READ);
+        }
+        return (int) (slot & VALUE_MASK);
+      }
+    }
+    misses.increment();
+    return ABSENT;
+  }
+
+  /**
+   * {@inheritDoc} If the bucket for the key is full, this evicts the entry with the lowest
+   * priority, or drops the new entry if its priority is lower than that. Either way, the bucket
+   * ages.
+   */
+  @Override
+  public void put(long universe, int lives, int value) {
+    checkArgument(value >= 0 && value <= VALUE_MASK, "Value out of range: %s", value);
+    long key = key(universe, lives);
+    long entry = (key << VALUE_BITS) | value;
+    int start = bucketStart(key);
+    int victim = -1;
+    long victimSlot = 0;
+    long victimPriority = Long.MAX_VALUE;
+    for (int i = start; i < start + WAYS; i++) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot == 0) {
+        if (SLOTS.compareAndSet(slots, i, 0L, entry)) {
+          size.incrementAndGet();
+          return;
+        }
+        // Another thread claimed this slot first. Look at what it put there.
+        slot = (long) SLOTS.getAcquire(slots, i);
+      }
+      if (keyOf(slot) == key) {
+        SLOTS.compareAndSet(slots, i, slot, entry | (slot & (READ | AGE_MASK)));
+        return;
+      }
+      long priority = priority(slot);
+      if (priority < victimPriority) {
+        victim = i;
+        victimSlot = slot;
+        victimPriority = priority;
+      }
+    }
+    if (priority(entry) < victimPriority) {
+      // Every entry in the bucket would be more expensive to compute again than this one.
+      rejections.increment();
+      age(start, -1);
+    } else if (SLOTS.compareAndSet(slots, victim, victimSlot, entry)) {
+      evictions.increment();
+      age(start, victim);
+    }
+  }
+
+  /**
+   * Ages the bucket starting at {@code start}, except for the slot {@code except}. Each entry has
+   * to be read again to keep its bonus, and one that has no bonus gets older.
+   */
+  private void age(int start, int except) {
+    for (int i = start; i < start + WAYS; i++) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (i == except || slot == 0) {
+        continue;
+      }
+      if ((slot & READ) != 0) {
+        SLOTS.compareAndSet(slots, i, slot, slot & ~READ);
+      } else if ((slot & AGE_MASK) != AGE_MASK) {
+        SLOTS.compareAndSet(slots, i, slot, slot + AGE_ONE);
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(slots, 0);
+    VarHandle.releaseFence();
+    size.set(0);
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+    rejections.reset();
+  }
+
+  @Override
+  public int capacity() {
+    return slots.length;
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public long hits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long misses() {
+    return misses.sum();
+  }
+
+  @Override
+  public void forEach(EntryVisitor visitor) {
+    for (int i = 0; i < slots.length; i++) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot != 0) {
+        long key = keyOf(slot);
+        visitor.visit(
+            key & UNIVERSE_MASK, (int) (key >>> UNIVERSE_BITS), (int) (slot & VALUE_MASK));
+      }
+    }
+  }
+
+  /** Returns how many entries have been replaced to make room for new ones. */
+  long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns how many new entries have been dropped because every entry in their bucket had a
+   * higher priority.
+   */
+  long rejections() {
+    return rejections.sum();
+  }
+
+  /** Returns how many bytes the entries take up. */
+  long bytes() {
+    return (long) slots.length * Long.BYTES;
+  }
+
+  /**
+   * Returns the priority of the entry in a slot: the estimated cost of computing it again, doubled
+   * if it has been read recently, and halved for each step of its age.
+   */
+  private static long priority(long slot) {
+    long key = keyOf(slot);
+    long cost = Long.bitCount(key & UNIVERSE_MASK) * (key >>> UNIVERSE_BITS);
+    long readCost = (slot & READ) == 0 ? cost : cost * 2;
+    return readCost >>> ((slot & AGE_MASK) >>> AGE_SHIFT);
+  }
+
+  private static long keyOf(long slot) {
+    return (slot & ~(READ | AGE_MASK)) >>> VALUE_BITS;
+  }
+
+  private int bucketStart(long key) {
+    return ((int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & bucketMask) * WAYS;
+  }
+
+  private static long key(long universe, int lives) {
+    checkArgument(
+        universe != 0 && (universe & ~UNIVERSE_MASK) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0 && lives <= MAX_LIVES, "Lives out of range: %s", lives);
+    return ((long) lives << UNIVERSE_BITS) | universe;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "EvictingCache{size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d, rejections=%d}",
+        size(), slots.length, hits(), misses(), evictions(), rejections());
+  }
+}
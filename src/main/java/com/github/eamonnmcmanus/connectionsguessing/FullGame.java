@@ -0,0 +1,452 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparingInt;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The whole game, with all 16 items rather than just the final 8 that {@link ConnectionsGuessing}
+ * considers. The items are A to P, and a solution is a partition of them into 4 connections of 4
+ * items each. There are 16! / (4!<sup>4</sup> 4!) = 2,627,625 such partitions, and there are
+ * 16C4 = 1820 possible guesses. The outcome of a guess is a {@link Score} exactly as before: MATCH
+ * if the guess is one of the connections, ONE_AWAY if 3 of its items are in the same connection,
+ * and TWO_AWAY otherwise.
+ *
+ * <p>A partition is packed into a {@code long} with the 16-bit masks of its 4 connections at bits
+ * 0, 16, 32, and 48, where the connections are in order of their lowest item. A guess is its index
+ * in the list of 4-item masks in increasing order. A universe of possible partitions is a bitmap
+ * over the partitions, in a {@code long[]} of {@value #WORDS} elements, which is about 320 KiB.
+ * Filtering a universe according to the outcome of a guess streams over it a word at a time, using
+ * the {@link ScoringKernel} to score the 64 partitions of each word, so no set of partitions is
+ * ever materialized. For MATCH, the 5775 partitions containing each guess are precomputed.
+ *
+ * <p>Correct guesses remove their items from the board, so the state of a game is the universe,
+ * the mask of items that have been found, and the number of lives, which is the number of wrong
+ * guesses still allowed. A correct guess costs no life. Once 3 connections have been found, so is
+ * the fourth.
+ *
+ * <p>The symmetry argument from the README applies here too. If we have made some guesses, then
+ * permuting items in a way that maps each of those guesses to itself leaves the universe
+ * unchanged, so two guesses that are related by such a permutation are equally good. Two items
+ * can be swapped by such a permutation if they belong to exactly the same previous guesses. So the
+ * <i>signature</i> of an item is the set of previous guesses it belongs to, and two guesses are
+ * equivalent if they have the same number of items with each signature. In particular every first
+ * guess is equivalent to ABCD.
+ */
+final class FullGame {
+  static final int ITEMS = 16;
+  static final int GUESS_COUNT = 1820;
+  static final int PARTITION_COUNT = 2_627_625;
+  static final int WORDS = (PARTITION_COUNT + Long.SIZE - 1) / Long.SIZE;
+
+  private static final int ALL_ITEMS = (1 << ITEMS) - 1;
+  private static final Score[] SCORES = Score.values();
+  private static final ScoringKernel KERNEL = ScoringKernel.get();
+
+  /** The 4-item masks, in increasing order. */
+  private static final char[] GUESSES = computeGuesses();
+
+  /** {@code GUESS_INDEXES[mask]} is the index of the guess with that mask, or -1. */
+  private static final short[] GUESS_INDEXES = computeGuessIndexes();
+
+  /**
+   * Every partition, packed as described in the class documentation, padded with zeros to a
+   * multiple of 64 so that the kernel can always score a whole word.
+   */
+  private static final long[] PARTITIONS = computePartitions();
+
+  /** {@code MATCHES[guess]} is the increasing indexes of the partitions containing the guess. */
+  private static final int[][] MATCHES = computeMatches();
+
+  /** The outcome of a guess: the guess and how many partitions of the universe got each score. */
+  record Split(int guess, int match, int oneAway, int twoAway) {
+    /** Returns the size of the largest universe that can remain after the guess. */
+    int worstCase() {
+      return Math.max(match, Math.max(oneAway, twoAway));
+    }
+
+    /** Returns true if the guess can tell partitions of the universe apart. */
+    boolean informative() {
+      return worstCase() < match + oneAway + twoAway;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s: match %d, one away %d, two away %d",
+          itemsString(guessMask(guess)), match, oneAway, twoAway);
+    }
+  }
+
+  private final Map<State, Integer> results = new HashMap<>();
+
+  /**
+   * Returns the mask of the given guess, where bit <i>i</i> is set if the guess contains the
+   * <i>i</i>th item.
+   */
+  static int guessMask(int guess) {
+    return GUESSES[guess];
+  }
+
+  /** Returns the index of the guess with the given mask, which must have 4 bits set. */
+  static int guessIndex(int mask) {
+    checkArgument(mask >= 0 && mask <= ALL_ITEMS && Integer.bitCount(mask) == 4, "Bad mask");
+    return GUESS_INDEXES[mask];
+  }
+
+  /** Returns the guess with the given items, for example {@code "ABCD"}. */
+  static int guess(String items) {
+    int mask = 0;
+    for (char c : items.toCharArray()) {
+      checkArgument(c >= 'A' && c < 'A' + ITEMS, "Bad item %s", c);
+      mask |= 1 << (c - 'A');
+    }
+    return guessIndex(mask);
+  }
+
+  /** Returns the 4 connection masks of the partition with the given index. */
+  static int[] connections(int partition) {
+    long packed = PARTITIONS[partition];
+    return new int[] {
+      (int) packed & ALL_ITEMS,
+      (int) (packed >>> 16) & ALL_ITEMS,
+      (int) (packed >>> 32) & ALL_ITEMS,
+      (int) (packed >>> 48)
+    };
+  }
+
+  /** Returns the score that {@code guess} gets if the solution is {@code partition}. */
+  static Score score(int partition, int guess) {
+    return score(PARTITIONS[partition], GUESSES[guess]);
+  }
+
+  /** Returns the score that the guess with the given mask gets against a packed partition. */
+  static Score score(long packed, int mask) {
+    long common = packed & (mask * 0x0001_0001_0001_0001L);
+    int max = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 16) {
+      max = Math.max(max, Long.bitCount((common >>> shift) & ALL_ITEMS));
+    }
+    return switch (max) {
+      case 4 -> Score.MATCH;
+      case 3 -> Score.ONE_AWAY;
+      default -> Score.TWO_AWAY;
+    };
+  }
+
+  /** Returns a new universe containing every partition. */
+  static long[] all() {
+    long[] universe = new long[WORDS];
+    Arrays.fill(universe, -1L);
+    universe[WORDS - 1] = -1L >>> (WORDS * Long.SIZE - PARTITION_COUNT);
+    return universe;
+  }
+
+  static int size(long[] universe) {
+    int size = 0;
+    for (long word : universe) {
+      size += Long.bitCount(word);
+    }
+    return size;
+  }
+
+  static boolean contains(long[] universe, int partition) {
+    return (universe[partition >>> 6] & (1L << partition)) != 0;
+  }
+
+  /** Returns a new universe with the partitions of {@code universe} that give {@code score}. */
+  static long[] filter(long[] universe, int guess, Score score) {
+    return filter(universe, guess, score, KERNEL);
+  }
+
+  static long[] filter(long[] universe, int guess, Score score, ScoringKernel kernel) {
+    long[] result = new long[WORDS];
+    if (score == Score.MATCH) {
+      for (int partition : MATCHES[guess]) {
+        if (contains(universe, partition)) {
+          result[partition >>> 6] |= 1L << partition;
+        }
+      }
+      return result;
+    }
+    int mask = GUESSES[guess];
+    long[] masks = new long[SCORES.length];
+    for (int w = 0; w < WORDS; w++) {
+      if (universe[w] != 0) {
+        kernel.scorePartitions(PARTITIONS, w << 6, universe[w], mask, masks);
+        result[w] = masks[score.ordinal()];
+      }
+    }
+    return result;
+  }
+
+  /** Returns how many partitions of the universe get each score from the given guess. */
+  static Split split(long[] universe, int guess) {
+    return split(universe, guess, KERNEL);
+  }
+
+  static Split split(long[] universe, int guess, ScoringKernel kernel) {
+    int[] counts = new int[SCORES.length];
+    int mask = GUESSES[guess];
+    long[] masks = new long[SCORES.length];
+    for (int w = 0; w < WORDS; w++) {
+      if (universe[w] != 0) {
+        kernel.scorePartitions(PARTITIONS, w << 6, universe[w], mask, masks);
+        for (int s = 0; s < SCORES.length; s++) {
+          counts[s] += Long.bitCount(masks[s]);
+        }
+      }
+    }
+    return new Split(guess, counts[0], counts[1], counts[2]);
+  }
+
+  /**
+   * Returns one guess from each class of equivalent guesses, given the previous guesses in {@code
+   * history}, as explained in the class documentation. Only guesses that avoid the {@code found}
+   * items are included.
+   */
+  static int[] orbitRepresentatives(int found, int... history) {
+    checkArgument(history.length <= Integer.SIZE, "History too long");
+    int[] signatures = new int[ITEMS];
+    for (int i = 0; i < history.length; i++) {
+      int mask = GUESSES[history[i]];
+      for (int item = 0; item < ITEMS; item++) {
+        if ((mask & (1 << item)) != 0) {
+          signatures[item] |= 1 << i;
+        }
+      }
+    }
+    // Number the distinct signatures in order of first appearance, so that a guess can be
+    // characterized by a count of its items in each of the at most 16 classes.
+    int[] classes = new int[ITEMS];
+    List<Integer> distinct = new ArrayList<>();
+    for (int item = 0; item < ITEMS; item++) {
+      int c = distinct.indexOf(signatures[item]);
+      if (c < 0) {
+        c = distinct.size();
+        distinct.add(signatures[item]);
+      }
+      classes[item] = c;
+    }
+    Set<Long> seen = new HashSet<>();
+    int[] representatives = new int[GUESS_COUNT];
+    int count = 0;
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      int mask = GUESSES[guess];
+      if ((mask & found) != 0) {
+        continue;
+      }
+      long key = 0;
+      for (int item = 0; item < ITEMS; item++) {
+        if ((mask & (1 << item)) != 0) {
+          key += 1L << (3 * classes[item]);
+        }
+      }
+      if (seen.add(key)) {
+        representatives[count++] = guess;
+      }
+    }
+    return Arrays.copyOf(representatives, count);
+  }
+
+  /**
+   * Returns the split of {@code universe} for one guess from each class of equivalent informative
+   * guesses, best first. A guess is better if the largest universe it can leave is smaller.
+   */
+  static List<Split> analyze(long[] universe, int found, int... history) {
+    List<Split> splits = new ArrayList<>();
+    for (int guess : orbitRepresentatives(found, history)) {
+      Split split = split(universe, guess);
+      if (split.informative()) {
+        splits.add(split);
+      }
+    }
+    splits.sort(comparingInt(Split::worstCase));
+    return splits;
+  }
+
+  /**
+   * Returns how many of the partitions in {@code universe} an optimal strategy can solve, when the
+   * items in {@code found} have already been found and {@code lives} wrong guesses are allowed.
+   * This is an exhaustive search, so it is only practical when the universe is small, for example
+   * late in a game. Results are cached in this instance, which is not thread-safe.
+   */
+  int search(long[] universe, int found, int lives) {
+    checkArgument(lives >= 0, "Bad lives %s", lives);
+    int[] members = new int[size(universe)];
+    int i = 0;
+    for (int w = 0; w < WORDS; w++) {
+      for (long bits = universe[w]; bits != 0; bits &= bits - 1) {
+        members[i++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    return search(members, found, lives);
+  }
+
+  private int search(int[] universe, int found, int lives) {
+    if (lives == 0 || universe.length == 0) {
+      return 0;
+    }
+    if (universe.length == 1 || Integer.bitCount(found) >= ITEMS - 4) {
+      return universe.length;
+    }
+    State state = new State(universe, found, lives);
+    Integer cached = results.get(state);
+    if (cached != null) {
+      return cached;
+    }
+    int best = 0;
+    byte[] scores = new byte[universe.length];
+    for (int guess = 0; guess < GUESS_COUNT && best < universe.length; guess++) {
+      int mask = GUESSES[guess];
+      if ((mask & found) != 0) {
+        continue;
+      }
+      int[] counts = new int[SCORES.length];
+      for (int i = 0; i < universe.length; i++) {
+        Score score = score(PARTITIONS[universe[i]], mask);
+        scores[i] = (byte) score.ordinal();
+        counts[score.ordinal()]++;
+      }
+      if (Math.max(counts[0], Math.max(counts[1], counts[2])) == universe.length) {
+        continue; // Not informative.
+      }
+      int[][] parts = new int[SCORES.length][];
+      for (int s = 0; s < SCORES.length; s++) {
+        parts[s] = new int[counts[s]];
+        counts[s] = 0;
+      }
+      for (int i = 0; i < universe.length; i++) {
+        parts[scores[i]][counts[scores[i]]++] = universe[i];
+      }
+      int value =
+          search(parts[0], found | mask, lives)
+              + search(parts[1], found, lives - 1)
+              + search(parts[2], found, lives - 1);
+      best = Math.max(best, value);
+    }
+    results.put(state, best);
+    return best;
+  }
+
+  /** The key for cached search results. */
+  private record State(int[] universe, int found, int lives) {
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof State that
+          && found == that.found
+          && lives == that.lives
+          && Arrays.equals(universe, that.universe);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(universe) * 31 + found * 7 + lives;
+    }
+  }
+
+  static String itemsString(int mask) {
+    StringBuilder sb = new StringBuilder();
+    for (int item = 0; item < ITEMS; item++) {
+      if ((mask & (1 << item)) != 0) {
+        sb.append((char) ('A' + item));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Prints the split for every essentially different first and second guess. The first guess can
+   * be ABCD, by symmetry.
+   */
+  public static void main(String[] args) {
+    long[] all = all();
+    int first = guess("ABCD");
+    System.out.printf("%d partitions%nFirst guess %s%n", size(all), split(all, first));
+    for (Score score : SCORES) {
+      long[] universe = filter(all, first, score);
+      int found = score == Score.MATCH ? guessMask(first) : 0;
+      System.out.printf("After %s (%d partitions), second guesses:%n", score, size(universe));
+      for (Split split : analyze(universe, found, first)) {
+        System.out.printf("  %s%n", split);
+      }
+    }
+  }
+
+  private static char[] computeGuesses() {
+    char[] guesses = new char[GUESS_COUNT];
+    int count = 0;
+    for (int mask = 0; mask <= ALL_ITEMS; mask++) {
+      if (Integer.bitCount(mask) == 4) {
+        guesses[count++] = (char) mask;
+      }
+    }
+    return guesses;
+  }
+
+  private static short[] computeGuessIndexes() {
+    short[] indexes = new short[ALL_ITEMS + 1];
+    Arrays.fill(indexes, (short) -1);
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      indexes[GUESSES[guess]] = (short) guess;
+    }
+    return indexes;
+  }
+
+  private static long[] computePartitions() {
+    long[] partitions = new long[WORDS * Long.SIZE];
+    int count = 0;
+    for (int c0 : connectionsWithLowest(ALL_ITEMS)) {
+      int rest0 = ALL_ITEMS & ~c0;
+      for (int c1 : connectionsWithLowest(rest0)) {
+        int rest1 = rest0 & ~c1;
+        for (int c2 : connectionsWithLowest(rest1)) {
+          partitions[count++] = c0 | ((long) c1 << 16) | ((long) c2 << 32);
+        }
+      }
+    }
+    if (count != PARTITION_COUNT) {
+      throw new AssertionError(count);
+    }
+    Arrays.sort(partitions, 0, count);
+    for (int i = 0; i < count; i++) {
+      long packed = partitions[i];
+      long fourth = ~(packed | (packed >>> 16) | (packed >>> 32)) & ALL_ITEMS;
+      partitions[i] = packed | (fourth << 48);
+    }
+    return partitions;
+  }
+
+  /** Returns the 4-item subsets of {@code items} that contain its lowest item. */
+  private static List<Integer> connectionsWithLowest(int items) {
+    int lowest = Integer.lowestOneBit(items);
+    List<Integer> result = new ArrayList<>();
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      int mask = GUESSES[guess];
+      if ((mask & lowest) != 0 && (mask & ~items) == 0) {
+        result.add(mask);
+      }
+    }
+    return result;
+  }
+
+  private static int[][] computeMatches() {
+    int[] counts = new int[GUESS_COUNT];
+    int[][] matches = new int[GUESS_COUNT][PARTITION_COUNT * 4 / GUESS_COUNT];
+    for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+      for (int connection : connections(partition)) {
+        int guess = GUESS_INDEXES[connection];
+        matches[guess][counts[guess]++] = partition;
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,107 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers "what should I guess next?" quickly enough to be used during a live game. An advisor
+ * wraps a {@link ConnectionsGuessing} engine, and remembers the advice it has given for each
+ * universe and number of lives. The engine's {@linkplain ConnectionsGuessing#transpositionTable()
+ * transposition table} remembers the results of the underlying searches. So the first game is
+ * about as expensive as one {@link ConnectionsGuessing#searchAbcd} call, and after that most advice
+ * is a table lookup.
+ *
+ * <p>An advisor is safe for concurrent use, and is intended to be shared by all the {@link
+ * GuessingSession} instances in a process, and by all the requests to an {@link AdviceServer}, so
+ * that they all benefit from each other's work. The advice for a given universe and number of
+ * lives is only ever computed once: if several threads ask for it at the same time, the first one
+ * computes it and the others wait for that result.
+ *
+ * <p>The searches underneath the requests are shared in the same way. The engine from {@link
+ * #create()} has {@linkplain ConnectionsGuessing#inFlightSearches() in-flight searches}, so if two
+ * threads ask for advice about different universes whose searches lead to the same subproblem,
+ * whichever reaches it first searches it and the other waits for that result.
+ */
+final class GuessAdvisor {
+  /** The advice for a universe: which guess to make, and how many connections it guarantees. */
+  record Advice(int guess, int solvable) {}
+
+  private final ConnectionsGuessing guessing;
+
+  /**
+   * The advice for each universe and number of lives, keyed by {@code lives << PartitionTable.SIZE
+   * | universe}. Unlike the engine's table, this is keyed on the actual universe rather than a
+   * canonical one, since the best guess is not invariant under the symmetries. A future is put in
+   * the map before its advice is computed, so concurrent requests for the same advice share one
+   * computation. There are only a few thousand reachable universes, so the map stays small.
+   */
+  private final ConcurrentMap<Long, CompletableFuture<Advice>> adviceMap =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder computations = new LongAdder();
+
+  GuessAdvisor(ConnectionsGuessing guessing) {
+    this.guessing = guessing;
+  }
+
+  /**
+   * Returns an advisor with an engine that has all the sequential optimizations turned on, and that
+   * shares subproblems between concurrent requests.
+   */
+  static GuessAdvisor create() {
+    var guessing =
+        ConnectionsGuessing.builder()
+            .transpositionTable(new TranspositionTable(1 << 20))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .inFlightSearches(new InFlightSearches())
+            .build();
+    return new GuessAdvisor(guessing);
+  }
+
+  ConnectionsGuessing guessing() {
+    return guessing;
+  }
+
+  /**
+   * Returns the best guess for the given universe, which is a mask over the {@linkplain
+   * PartitionTable A-connections}, with the given number of lives.
+   */
+  Advice advise(long universe, int lives) {
+    checkArgument(
+        universe != 0 && (universe & ~PartitionTable.ALL) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0, "No lives left");
+    Long key = ((long) lives << PartitionTable.SIZE) | universe;
+    CompletableFuture<Advice> future = adviceMap.get(key);
+    if (future == null) {
+      var mine = new CompletableFuture<Advice>();
+      future = adviceMap.putIfAbsent(key, mine);
+      if (future == null) {
+        future = mine;
+        computations.increment();
+        try {
+          // The best guess is the first one that achieves the search result, so that result is what
+          // the guess guarantees. Finding the guess searches again, but that is a table lookup now.
+          int solvable = guessing.search(universe, lives);
+          mine.complete(new Advice(guessing.bestGuess(universe, lives), solvable));
+        } catch (RuntimeException | Error e) {
+          // Let a later request try again rather than remembering the failure.
+          adviceMap.remove(key, mine);
+          mine.completeExceptionally(e);
+          throw e;
+        }
+      }
+    }
+    return future.join();
+  }
+
+  /** Returns how many times advice has actually been computed, rather than found in the cache. */
+  long computations() {
+    return computations.sum();
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.github.eamonnmcmanus.connectionsguessing.GuessAdvisor.Advice;
+
+/**
+ * One game in progress. The session starts with every A-connection possible, and each time we
+ * {@linkplain #record record} a guess and the game's response, it narrows the set of possible
+ * connections. At any point, {@link #advice()} says what to guess next and how many of the still
+ * possible connections that strategy is guaranteed to find.
+ *
+ * <p>A session is not safe for concurrent use, but it is cheap, so each game should have its own.
+ * The {@link GuessAdvisor} should be shared.
+ */
+final class GuessingSession {
+  private final GuessAdvisor advisor;
+  private long universe = PartitionTable.ALL;
+  private int lives;
+  private boolean solved;
+
+  GuessingSession(GuessAdvisor advisor, int lives) {
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    this.advisor = advisor;
+    this.lives = lives;
+  }
+
+  /** Returns the best next guess, or throws if the game is over. */
+  Advice advice() {
+    checkState(!isOver(), "Game is over");
+    return advisor.advise(universe, lives);
+  }
+
+  /** Returns the best next guess as a {@link Connection}. */
+  Connection nextGuess() {
+    return PartitionTable.connection(advice().guess());
+  }
+
+  /** Records that we guessed {@code guess} and the game responded with {@code score}. */
+  void record(Connection guess, Score score) {
+    checkState(!isOver(), "Game is over");
+    long newUniverse = universe & PartitionTable.mask(guess.aIndex(), score);
+    checkArgument(newUniverse != 0, "No possible connection gives %s for %s", score, guess);
+    universe = newUniverse;
+    lives--;
+    solved = score == Score.MATCH;
+  }
+
+  /** Returns true if the connection has been found or there are no lives left. */
+  boolean isOver() {
+    return solved || lives == 0;
+  }
+
+  boolean isSolved() {
+    return solved;
+  }
+
+  int lives() {
+    return lives;
+  }
+
+  /** Returns the connections that are still possible, given the responses so far. */
+  ConnectionSet possibleConnections() {
+    return ConnectionSet.ofAMask(universe).freeze();
+  }
+}
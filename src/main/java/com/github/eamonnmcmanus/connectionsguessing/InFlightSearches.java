@@ -0,0 +1,93 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The subproblems that some thread is searching right now, so that other threads that reach the
+ * same subproblem wait for that search instead of repeating it. A {@link ResultCache} only helps
+ * once a result has been recorded; this covers the time before that, which for a big subproblem
+ * can be long enough for several concurrent {@linkplain GuessAdvisor requests} or {@linkplain
+ * ConnectionsGuessing#parallel parallel} tasks to arrive at it.
+ *
+ * <p>Only subproblems with at least {@link #minLives()} lives are claimed here, since for smaller
+ * ones the cost of the map is more than the cost of searching again.
+ *
+ * <p>Waiting cannot deadlock. A search only waits for subproblems below it, which have fewer lives,
+ * so no thread can end up waiting, directly or indirectly, for itself.
+ *
+ * <p>Like a {@link ResultCache}, an instance must only be shared between engines that would compute
+ * the same result for every subproblem.
+ */
+final class InFlightSearches {
+  /** The default for {@link #minLives()}. */
+  static final int DEFAULT_MIN_LIVES = 3;
+
+  private final int minLives;
+
+  /** The search in progress for each subproblem, keyed by {@code lives << SIZE | universe}. */
+  private final ConcurrentMap<Long, CompletableFuture<Integer>> searches =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder shared = new LongAdder();
+
+  InFlightSearches() {
+    this(DEFAULT_MIN_LIVES);
+  }
+
+  InFlightSearches(int minLives) {
+    checkArgument(minLives > 0, "Bad minLives %s", minLives);
+    this.minLives = minLives;
+  }
+
+  /** Returns the fewest lives a subproblem must have to be claimed here. */
+  int minLives() {
+    return minLives;
+  }
+
+  /**
+   * Returns the result of {@code search} for {@code universe} with {@code lives} remaining. If
+   * another thread is already searching that subproblem, waits for its result instead of calling
+   * {@code search}. Otherwise claims the subproblem, calls {@code search}, and releases the claim.
+   * The caller must record the result in its {@link ResultCache} inside {@code search}, so that a
+   * thread that arrives after the claim is released finds it there.
+   */
+  int search(long universe, int lives, IntSupplier search) {
+    if (lives < minLives) {
+      return search.getAsInt();
+    }
+    Long key = ((long) lives << PartitionTable.SIZE) | universe;
+    var mine = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> theirs = searches.putIfAbsent(key, mine);
+    if (theirs != null) {
+      shared.increment();
+      return theirs.join();
+    }
+    try {
+      int result = search.getAsInt();
+      mine.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      // Waiting threads see the same failure, but a later search can try again.
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      searches.remove(key, mine);
+    }
+  }
+
+  /** Returns how many times a thread waited for another thread's search instead of searching. */
+  long shared() {
+    return shared.sum();
+  }
+
+  /** Returns how many subproblems are being searched right now. */
+  int size() {
+    return searches.size();
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sends requests to an {@link AdviceServer} from many concurrent clients, and reports the latency
+ * and throughput. Each client is a virtual thread with its own connection, sending one request at
+ * a time and waiting for the response. The requests are for random reachable universes, found by
+ * applying a few random guesses and responses to the universe of all connections, and a random
+ * number of lives.
+ */
+final class LoadGenerator {
+  private static final int MAX_DEPTH = 3;
+  private static final int MAX_LIVES = 6;
+
+  /** The latency percentiles and throughput of a run. */
+  record Report(int requests, double seconds, long p50Nanos, long p99Nanos) {
+    double requestsPerSecond() {
+      return requests / seconds;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d requests in %.2fs: %.0f requests/s, p50 %.1fus, p99 %.1fus",
+          requests, seconds, requestsPerSecond(), p50Nanos / 1e3, p99Nanos / 1e3);
+    }
+  }
+
+  private LoadGenerator() {}
+
+  /**
+   * Runs {@code clients} clients against the server on the given loopback port, each sending
+   * {@code requestsPerClient} requests. The requests are determined by {@code seed}.
+   */
+  static Report run(int port, int clients, int requestsPerClient, long seed)
+      throws InterruptedException {
+    checkArgument(clients > 0, "Bad client count %s", clients);
+    checkArgument(requestsPerClient > 0, "Bad request count %s", requestsPerClient);
+    var random = new SplittableRandom(seed);
+    List<Future<long[]>> futures = new ArrayList<>();
+    long start = System.nanoTime();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < clients; i++) {
+        var clientRandom = random.split();
+        futures.add(executor.submit(() -> client(port, requestsPerClient, clientRandom)));
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long[] latencies = new long[clients * requestsPerClient];
+    for (int i = 0; i < clients; i++) {
+      try {
+        long[] clientLatencies = futures.get(i).get();
+        System.arraycopy(clientLatencies, 0, latencies, i * requestsPerClient, requestsPerClient);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Client failed", e.getCause());
+      }
+    }
+    Arrays.sort(latencies);
+    return new Report(
+        latencies.length, seconds, percentile(latencies, 50), percentile(latencies, 99));
+  }
+
+  private static long percentile(long[] sorted, int percent) {
+    return sorted[(int) ((sorted.length - 1) * (long) percent / 100)];
+  }
+
+  /** Sends requests over one connection, and returns the latency of each one in nanoseconds. */
+  private static long[] client(int port, int requests, SplittableRandom random) {
+    long[] latencies = new long[requests];
+    try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        var in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        var out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < requests; i++) {
+        String request =
+            "UNIVERSE " + randomUniverse(random) + " " + random.nextInt(1, MAX_LIVES + 1);
+        long start = System.nanoTime();
+        out.println(request);
+        out.flush();
+        String response = in.readLine();
+        latencies[i] = System.nanoTime() - start;
+        if (response == null || !response.startsWith("OK ")) {
+          throw new IllegalStateException("Bad response to " + request + ": " + response);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return latencies;
+  }
+
+  /** Returns the universe after a random number of random guesses with random responses. */
+  private static long randomUniverse(SplittableRandom random) {
+    long universe = PartitionTable.ALL;
+    for (int depth = random.nextInt(MAX_DEPTH + 1); depth > 0; depth--) {
+      int guess = random.nextInt(PartitionTable.SIZE);
+      long next =
+          universe
+              & (random.nextBoolean()
+                  ? PartitionTable.oneAwayMask(guess)
+                  : PartitionTable.twoAwayMask(guess));
+      if (next != 0) {
+        universe = next;
+      }
+    }
+    return universe;
+  }
+}
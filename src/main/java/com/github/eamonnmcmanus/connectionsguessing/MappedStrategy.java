@@ -0,0 +1,131 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.github.eamonnmcmanus.connectionsguessing.StrategyTree.HEADER_BYTES;
+import static com.github.eamonnmcmanus.connectionsguessing.StrategyTree.NODE_BYTES;
+import static com.github.eamonnmcmanus.connectionsguessing.StrategyTree.NO_CHILD;
+import static com.github.eamonnmcmanus.connectionsguessing.StrategyTree.NO_GUESS;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.nio.file.StandardOpenOption.READ;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+/**
+ * A strategy file written by {@link StrategyTree#write}, mapped into memory. Looking up the next
+ * guess only reads the records on the path from the root, so nothing needs to be deserialized up
+ * front. But every record is checked when the file is opened, which is a quick scan, so a corrupt
+ * file is rejected then rather than giving a nonsensical guess or child later. Instances are
+ * immutable and can be shared between threads.
+ */
+final class MappedStrategy implements Strategy {
+  private final MappedByteBuffer buffer;
+  private final int nodeCount;
+  private final int root;
+
+  private MappedStrategy(MappedByteBuffer buffer, int nodeCount, int root) {
+    this.buffer = buffer;
+    this.nodeCount = nodeCount;
+    this.root = root;
+  }
+
+  /** Maps the given strategy file, checking that its header and records are valid. */
+  static MappedStrategy open(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IOException("Strategy file too short: " + file);
+      }
+      buffer = channel.map(MapMode.READ_ONLY, 0, size);
+    }
+    if (buffer.getInt(0) != StrategyTree.MAGIC) {
+      throw new IOException("Not a strategy file: " + file);
+    }
+    int version = buffer.getInt(4);
+    if (version != StrategyTree.VERSION) {
+      throw new IOException("Unsupported strategy file version " + version + ": " + file);
+    }
+    int nodeCount = buffer.getInt(8);
+    int root = buffer.getInt(12);
+    if (nodeCount <= 0
+        || buffer.capacity() != HEADER_BYTES + (long) nodeCount * NODE_BYTES
+        || root < 0
+        || root >= nodeCount) {
+      throw new IOException("Corrupt strategy file: " + file);
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      int offset = HEADER_BYTES + node * NODE_BYTES;
+      int guess = buffer.get(offset);
+      if (guess < 0 || guess >= PartitionTable.SIZE) {
+        throw new IOException(
+            "Corrupt strategy file: node " + node + " has guess " + guess + ": " + file);
+      }
+      for (int childOffset = 4; childOffset <= 8; childOffset += 4) {
+        int child = buffer.getInt(offset + childOffset);
+        if (child != NO_CHILD && (child < 0 || child >= nodeCount)) {
+          throw new IOException(
+              String.format(
+                  "Corrupt strategy file: node %d has child %d, but there are %d nodes: %s",
+                  node, child, nodeCount, file));
+        }
+      }
+    }
+    return new MappedStrategy(buffer, nodeCount, root);
+  }
+
+  int nodeCount() {
+    return nodeCount;
+  }
+
+  /** Returns how many connections of the original universe this strategy finds. */
+  int solvable() {
+    return buffer.getShort(offset(root) + 2);
+  }
+
+  /**
+   * Returns the guess to make after the given responses to the previous guesses of this strategy,
+   * as an index into {@link ConnectionsGuessing.Connection#ALL_A_CONNECTIONS}, or {@link
+   * StrategyTree#NO_GUESS} if there are no lives left. The responses must not include {@link
+   * Score#MATCH}, since that ends the game.
+   */
+  int nextGuess(Score... responses) {
+    int node = root;
+    for (Score response : responses) {
+      node = child(node, response);
+      if (node == NO_CHILD) {
+        return NO_GUESS;
+      }
+    }
+    return guess(node);
+  }
+
+  @Override
+  public int root() {
+    return root;
+  }
+
+  @Override
+  public int guess(int node) {
+    return buffer.get(offset(node));
+  }
+
+  @Override
+  public int child(int node, Score response) {
+    int childOffset =
+        switch (response) {
+          case MATCH -> throw new IllegalArgumentException("Game is already over");
+          case ONE_AWAY -> 4;
+          case TWO_AWAY -> 8;
+        };
+    return buffer.getInt(offset(node) + childOffset);
+  }
+
+  private int offset(int node) {
+    checkElementIndex(node, nodeCount, "node");
+    return HEADER_BYTES + node * NODE_BYTES;
+  }
+}
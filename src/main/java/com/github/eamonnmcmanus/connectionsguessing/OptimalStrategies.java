@@ -0,0 +1,218 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Every optimal strategy for a universe, not just one. {@link ConnectionsGuessing#search} only
+ * finds the best result, and {@link StrategyTree} follows just one of the guesses that achieve it.
+ * Here we record, for each universe and number of lives, every guess that achieves the best
+ * result, which lets us count the optimal strategies exactly and pick one uniformly at random.
+ *
+ * <p>A strategy is optimal exactly when its first guess is optimal and the strategies it follows
+ * after the ONE_AWAY and TWO_AWAY responses are optimal for those universes, since the result is
+ * the sum of the results for the two. So the number of optimal strategies is the sum, over the
+ * optimal guesses, of the product of the numbers for the two universes. Two strategies are
+ * different if they make a different guess after any sequence of responses.
+ *
+ * <p>The numbers grow very quickly with the number of lives, so they are {@link BigInteger}. But
+ * the same universe with the same lives is reached by many sequences of guesses, so the
+ * information is kept in a DAG with one node for each distinct universe and number of lives, and
+ * the memory needed grows with the number of those rather than with the number of strategies.
+ *
+ * <p>Instances are not safe for concurrent use.
+ */
+final class OptimalStrategies {
+  private final ConnectionsGuessing guessing;
+  private final Map<Long, Node> nodes = new HashMap<>();
+
+  /**
+   * A node of the DAG: the optimal guesses for a universe and number of lives, as a mask over the
+   * {@linkplain PartitionTable A-connections}, and the number of optimal strategies.
+   */
+  private record Node(long optimalGuesses, BigInteger count) {}
+
+  /** Uses the given engine to evaluate guesses. Its transposition table is shared. */
+  OptimalStrategies(ConnectionsGuessing guessing) {
+    this.guessing = guessing;
+  }
+
+  /**
+   * Returns every guess that achieves the best result for {@code universe} with {@code lives}, as
+   * a mask over the A-connections.
+   */
+  long optimalGuesses(long universe, int lives) {
+    return node(universe, lives).optimalGuesses;
+  }
+
+  /** Returns the number of distinct optimal strategies for {@code universe} with {@code lives}. */
+  BigInteger count(long universe, int lives) {
+    return node(universe, lives).count;
+  }
+
+  /** Returns how many nodes of the DAG have been computed so far. */
+  int nodeCount() {
+    return nodes.size();
+  }
+
+  private Node node(long universe, int lives) {
+    checkArgument(
+        universe != 0 && (universe & ~PartitionTable.ALL) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    long key = ((long) lives << PartitionTable.SIZE) | universe;
+    Node node = nodes.get(key);
+    if (node == null) {
+      node = computeNode(universe, lives);
+      nodes.put(key, node);
+    }
+    return node;
+  }
+
+  private Node computeNode(long universe, int lives) {
+    int best = guessing.search(universe, lives);
+    long candidates = guessing.onlyGuessUniverse() ? universe : PartitionTable.ALL;
+    long optimalGuesses = 0;
+    BigInteger count = BigInteger.ZERO;
+    for (long rest = candidates; rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      if (guessing.bestForGuess(universe, guess, lives) == best) {
+        optimalGuesses |= 1L << guess;
+        count = count.add(countStartingWith(universe, guess, lives));
+      }
+    }
+    return new Node(optimalGuesses, count);
+  }
+
+  /**
+   * Returns the number of optimal strategies for {@code universe} with {@code lives} that start
+   * with {@code guess}, given that it is an optimal guess.
+   */
+  private BigInteger countStartingWith(long universe, int guess, int lives) {
+    return branchCount(universe & PartitionTable.oneAwayMask(guess), lives - 1)
+        .multiply(branchCount(universe & PartitionTable.twoAwayMask(guess), lives - 1));
+  }
+
+  /**
+   * Returns the number of optimal strategies after a response that leaves {@code universe} with
+   * {@code lives}. If the response is impossible or there are no lives left, the game is over, and
+   * there is just one way to do that.
+   */
+  private BigInteger branchCount(long universe, int lives) {
+    return universe == 0 || lives == 0 ? BigInteger.ONE : count(universe, lives);
+  }
+
+  /**
+   * Returns an optimal strategy for {@code universe} with {@code lives}, chosen uniformly at random
+   * from all of them. Each optimal guess is chosen with probability proportional to the number of
+   * optimal strategies that start with it, and the strategies after its responses are then chosen
+   * independently in the same way. So the same universe may be played differently depending on
+   * how it was reached, and the result is a tree rather than a DAG.
+   */
+  Strategy sample(long universe, int lives, Random random) {
+    var strategy = new SampledStrategy();
+    strategy.sample(universe, lives, random);
+    return strategy;
+  }
+
+  /** A strategy built by {@link #sample}, where node <i>i</i> is element <i>i</i> of each list. */
+  private class SampledStrategy implements Strategy {
+    private final List<Integer> guesses = new ArrayList<>();
+    private final List<Integer> oneAwayChildren = new ArrayList<>();
+    private final List<Integer> twoAwayChildren = new ArrayList<>();
+
+    /** Adds a node for {@code universe} and its descendants, and returns its index. */
+    int sample(long universe, int lives, Random random) {
+      Node node = node(universe, lives);
+      // Choose a strategy by its index among all the optimal ones, then find which guess it starts
+      // with.
+      BigInteger index = randomBelow(node.count, random);
+      int guess = -1;
+      for (long rest = node.optimalGuesses; rest != 0; rest &= rest - 1) {
+        guess = Long.numberOfTrailingZeros(rest);
+        BigInteger strategies = countStartingWith(universe, guess, lives);
+        if (index.compareTo(strategies) < 0) {
+          break;
+        }
+        index = index.subtract(strategies);
+      }
+      int i = guesses.size();
+      guesses.add(guess);
+      oneAwayChildren.add(StrategyTree.NO_CHILD);
+      twoAwayChildren.add(StrategyTree.NO_CHILD);
+      if (lives > 1) {
+        long oneAway = universe & PartitionTable.oneAwayMask(guess);
+        long twoAway = universe & PartitionTable.twoAwayMask(guess);
+        if (oneAway != 0) {
+          oneAwayChildren.set(i, sample(oneAway, lives - 1, random));
+        }
+        if (twoAway != 0) {
+          twoAwayChildren.set(i, sample(twoAway, lives - 1, random));
+        }
+      }
+      return i;
+    }
+
+    @Override
+    public int root() {
+      return 0;
+    }
+
+    @Override
+    public int guess(int node) {
+      return guesses.get(node);
+    }
+
+    @Override
+    public int child(int node, Score response) {
+      return switch (response) {
+        case MATCH -> throw new IllegalArgumentException("Game is already over");
+        case ONE_AWAY -> oneAwayChildren.get(node);
+        case TWO_AWAY -> twoAwayChildren.get(node);
+      };
+    }
+  }
+
+  /** Returns a number chosen uniformly from 0 to {@code bound - 1}. */
+  private static BigInteger randomBelow(BigInteger bound, Random random) {
+    BigInteger result;
+    do {
+      result = new BigInteger(bound.bitLength(), random);
+    } while (result.compareTo(bound) >= 0);
+    return result;
+  }
+
+  /**
+   * Prints, for 2 to 6 lives, how many first guesses are optimal, how many second guesses are
+   * optimal after ABCD is one away, how many optimal strategies there are, and how many nodes the
+   * DAG needed to count them.
+   */
+  public static void main(String[] args) {
+    var guessing =
+        ConnectionsGuessing.builder()
+            .transpositionTable(new TranspositionTable(1 << 20))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .build();
+    var strategies = new OptimalStrategies(guessing);
+    int abcd = ConnectionsGuessing.Connection.fromString("ABCD").aIndex();
+    long oneAway = PartitionTable.oneAwayMask(abcd);
+    for (int lives = 2; lives <= 6; lives++) {
+      System.out.printf(
+          "With %d lives: %d optimal first guesses, %d optimal second guesses after ABCD is one"
+              + " away, %d optimal strategies, %d DAG nodes\n",
+          lives,
+          Long.bitCount(strategies.optimalGuesses(PartitionTable.ALL, lives)),
+          Long.bitCount(strategies.optimalGuesses(oneAway, lives - 1)),
+          strategies.count(PartitionTable.ALL, lives),
+          strategies.nodeCount());
+    }
+  }
+}
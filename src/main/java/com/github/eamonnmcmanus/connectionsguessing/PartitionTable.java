@@ -0,0 +1,72 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+
+/**
+ * Precomputed outcomes of every guess against every A-connection. This is the primitive engine
+ * behind {@link ConnectionsGuessing#search}: a universe is a {@code long} mask where bit <i>i</i>
+ * is set if {@code Connection.ALL_A_CONNECTIONS.get(i)} is in the universe, and a guess is the
+ * index of an A-connection. Splitting a universe according to the outcomes of a guess is then
+ * just an AND with each of the three masks for that guess.
+ *
+ * <p>Every guess can be an A-connection, since guessing EFGH is the same as guessing ABCD.
+ */
+final class PartitionTable {
+  private PartitionTable() {}
+
+  static final int SIZE = 35;
+
+  /** The universe containing every A-connection. */
+  static final long ALL = (1L << SIZE) - 1;
+
+  private static final Score[] SCORES = Score.values();
+
+  /** {@code MASKS[guess * 3 + score.ordinal()]} is the set of connections with that score. */
+  private static final long[] MASKS = computeMasks();
+
+  /** Returns the A-connections that have the given {@code score} when {@code guess} is made. */
+  static long mask(int guess, Score score) {
+    return MASKS[guess * SCORES.length + score.ordinal()];
+  }
+
+  static long matchMask(int guess) {
+    return MASKS[guess * SCORES.length];
+  }
+
+  static long oneAwayMask(int guess) {
+    return MASKS[guess * SCORES.length + 1];
+  }
+
+  static long twoAwayMask(int guess) {
+    return MASKS[guess * SCORES.length + 2];
+  }
+
+  /** Returns the A-connection with the given index. */
+  static Connection connection(int index) {
+    return Connection.ALL_A_CONNECTIONS.get(index);
+  }
+
+  /**
+   * Converts between a mask of A-connections and a mask of the complementary connections, where
+   * bit <i>j</i> of the latter is set if {@code Connection.ALL_CONNECTIONS.get(j)} is in the set.
+   * The complement of {@code ALL_CONNECTIONS.get(35 + i)} is {@code ALL_CONNECTIONS.get(34 - i)},
+   * so this just reverses the 35 bits. It is its own inverse.
+   */
+  static long complement(long mask) {
+    checkArgument((mask & ~ALL) == 0, "Bad mask %s", mask);
+    return Long.reverse(mask) >>> (Long.SIZE - SIZE);
+  }
+
+  private static long[] computeMasks() {
+    long[] masks = new long[SIZE * SCORES.length];
+    long[] guessMasks = new long[SCORES.length];
+    for (int guess = 0; guess < SIZE; guess++) {
+      ScoringKernel.get().scoreConnections(connection(guess).bits(), guessMasks);
+      System.arraycopy(guessMasks, 0, masks, guess * SCORES.length, SCORES.length);
+    }
+    return masks;
+  }
+}
@@ -0,0 +1,286 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Results of {@link ConnectionsGuessing#search} kept in a memory-mapped file, so that they survive
+ * from one run to the next. The result for a universe and number of lives never changes, so once a
+ * run has computed it, later runs can just read it. It does depend on {@link
+ * ConnectionsGuessing#onlyGuessUniverse()}, so that is part of the key.
+ *
+ * <p>The file is a header of 4 big-endian {@code int} values:
+ *
+ * <pre>
+ * MAGIC VERSION slotCount 0
+ * </pre>
+ *
+ * followed by {@code slotCount} slots of {@value #SLOT_BYTES} bytes, each of which is two
+ * big-endian {@code long} values:
+ *
+ * <pre>
+ * key = lives &lt;&lt; 36 | onlyGuessUniverse &lt;&lt; 35 | universe
+ * checksum &lt;&lt; 32 | value
+ * </pre>
+ *
+ * A slot whose key is 0 is empty. Like {@link TranspositionTable}, the slots are an open-addressing
+ * hash table, and a new entry claims its slot with a compare-and-set on the key, so the cache is
+ * safe for concurrent use within one process. It must not be used by two processes at once, so
+ * {@link #open} takes an exclusive lock on the file, which lasts until {@link #close}.
+ *
+ * <p>The cache is designed to be safe to reopen after a crash. A crashed process may leave a slot
+ * whose key is written but whose value is not, and a crashed machine may leave arbitrary
+ * combinations of old and new data. Every entry carries a checksum of its key and value, and an
+ * entry whose checksum does not match is treated as absent, so the worst that can happen is that a
+ * result is computed again. If the header is missing or has a different version, because the file
+ * is new, was not completely initialized, or was written by an incompatible version of this code,
+ * the file is reinitialized to be empty. Once it is three-quarters full, new results are not
+ * recorded. So a file with more entries than that is corrupt, and it too is reinitialized. Lookups
+ * never probe more than every slot once, so even a corrupt file cannot make them loop forever.
+ */
+final class PersistentCache implements Closeable {
+  static final int MAGIC = 0x43474343; // "CGCC"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int SLOT_BYTES = 16;
+  static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private static final int UNIVERSE_BITS = 35;
+  private static final int LIVES_BITS = 12;
+  private static final long UNIVERSE_MASK = (1L << UNIVERSE_BITS) - 1;
+  private static final int MAX_LIVES = (1 << LIVES_BITS) - 1;
+  private static final int MAX_VALUE = 0xFFFF;
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int indexMask;
+  private final int maxSize;
+  private final AtomicInteger size = new AtomicInteger();
+
+  private PersistentCache(FileChannel channel, MappedByteBuffer buffer, int slotCount, int size) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.indexMask = slotCount - 1;
+    this.maxSize = maxSize(slotCount);
+    this.size.set(size);
+  }
+
+  private static int maxSize(int slotCount) {
+    return slotCount - slotCount / 4;
+  }
+
+  /**
+   * Opens the cache in the given file, creating it if it does not exist. If the file already
+   * contains a valid cache, its existing capacity is used. Otherwise the file is initialized with
+   * room for at least {@code capacity} entries, rounded up to a power of 2.
+   *
+   * @throws IOException if the file cannot be opened, or if it is already open, in this process or
+   *     another one
+   */
+  static PersistentCache open(Path file, int capacity) throws IOException {
+    checkArgument(capacity > 0 && capacity <= 1 << 26, "Bad capacity %s", capacity);
+    FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE);
+    try {
+      lock(channel, file);
+      int slotCount = validSlotCount(channel);
+      if (slotCount != 0) {
+        MappedByteBuffer buffer = map(channel, slotCount);
+        int size = usedSlots(buffer, slotCount);
+        if (size <= maxSize(slotCount)) {
+          return new PersistentCache(channel, buffer, slotCount, size);
+        }
+        // We never fill more slots than maxSize, so the contents are garbage.
+      } else {
+        slotCount = Integer.highestOneBit(capacity);
+        if (slotCount < capacity) {
+          slotCount <<= 1;
+        }
+      }
+      initialize(channel, slotCount);
+      return new PersistentCache(channel, map(channel, slotCount), slotCount, 0);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Takes an exclusive lock on the whole file. Closing the channel releases it. */
+  private static void lock(FileChannel channel, Path file) throws IOException {
+    FileLock lock;
+    try {
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null; // This process already has the file open.
+    }
+    if (lock == null) {
+      throw new IOException("Cache file is already in use: " + file);
+    }
+  }
+
+  /** Returns the slot count from the file's header, or 0 if the header is not valid. */
+  private static int validSlotCount(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_BYTES) {
+      return 0;
+    }
+    var header = channel.map(MapMode.READ_ONLY, 0, HEADER_BYTES);
+    int slotCount = header.getInt(8);
+    boolean valid =
+        header.getInt(0) == MAGIC
+            && header.getInt(4) == VERSION
+            && slotCount > 0
+            && Integer.bitCount(slotCount) == 1
+            && channel.size() == HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+    return valid ? slotCount : 0;
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, int slotCount) throws IOException {
+    return channel.map(MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slotCount * SLOT_BYTES);
+  }
+
+  /** Returns how many of the slots in {@code buffer} have a nonzero key. */
+  private static int usedSlots(MappedByteBuffer buffer, int slotCount) {
+    int used = 0;
+    for (int i = 0; i < slotCount; i++) {
+      if ((long) LONGS.get(buffer, keyOffset(i)) != 0) {
+        used++;
+      }
+    }
+    return used;
+  }
+
+  /**
+   * Makes the file an empty cache with the given number of slots. The header is written last, so a
+   * crash during initialization leaves a file that will be initialized again.
+   */
+  private static void initialize(FileChannel channel, int slotCount) throws IOException {
+    channel.truncate(0);
+    long size = HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+    MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+    buffer.force();
+    buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slotCount).putInt(12, 0);
+    buffer.force();
+  }
+
+  /**
+   * Returns the recorded result for {@code universe} with {@code lives} remaining, or {@link
+   * TranspositionTable#ABSENT} if there is none.
+   */
+  int get(long universe, int lives, boolean onlyGuessUniverse) {
+    long key = key(universe, lives, onlyGuessUniverse);
+    int i = indexFor(key);
+    for (int probes = 0; probes <= indexMask; probes++, i = (i + 1) & indexMask) {
+      long slotKey = (long) LONGS.getAcquire(buffer, keyOffset(i));
+      if (slotKey == 0) {
+        return TranspositionTable.ABSENT;
+      }
+      if (slotKey == key) {
+        long entry = (long) LONGS.getAcquire(buffer, keyOffset(i) + Long.BYTES);
+        int value = (int) entry & MAX_VALUE;
+        return (int) (entry >>> 32) == checksum(key, value) ? value : TranspositionTable.ABSENT;
+      }
+    }
+    // Every slot is taken by another key. That only happens if the file was corrupted while open.
+    return TranspositionTable.ABSENT;
+  }
+
+  /**
+   * Records that the result for {@code universe} with {@code lives} remaining is {@code value}. If
+   * the cache is already full enough, the result is silently dropped.
+   */
+  void put(long universe, int lives, boolean onlyGuessUniverse, int value) {
+    checkArgument(value >= 0 && value <= MAX_VALUE, "Value out of range: %s", value);
+    long key = key(universe, lives, onlyGuessUniverse);
+    long entry = ((long) checksum(key, value) << 32) | value;
+    int i = indexFor(key);
+    for (int probes = 0; probes <= indexMask; probes++, i = (i + 1) & indexMask) {
+      int offset = keyOffset(i);
+      long slotKey = (long) LONGS.getAcquire(buffer, offset);
+      if (slotKey == 0) {
+        if (size.get() >= maxSize) {
+          return;
+        }
+        if (LONGS.compareAndSet(buffer, offset, 0L, key)) {
+          size.incrementAndGet();
+          LONGS.setRelease(buffer, offset + Long.BYTES, entry);
+          return;
+        }
+        // Another thread claimed this slot first. Look at what it put there.
+        slotKey = (long) LONGS.getAcquire(buffer, offset);
+      }
+      if (slotKey == key) {
+        LONGS.setRelease(buffer, offset + Long.BYTES, entry);
+        return;
+      }
+    }
+    // Every slot is taken by another key, so drop the result as if the cache were full.
+  }
+
+  int capacity() {
+    return indexMask + 1;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  /** Writes any changes to the file. */
+  void flush() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    channel.close();
+  }
+
+  private static int keyOffset(int slot) {
+    return HEADER_BYTES + slot * SLOT_BYTES;
+  }
+
+  private int indexFor(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & indexMask;
+  }
+
+  private static long key(long universe, int lives, boolean onlyGuessUniverse) {
+    checkArgument(
+        universe != 0 && (universe & ~UNIVERSE_MASK) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0 && lives <= MAX_LIVES, "Lives out of range: %s", lives);
+    return ((long) lives << (UNIVERSE_BITS + 1))
+        | (onlyGuessUniverse ? 1L << UNIVERSE_BITS : 0)
+        | universe;
+  }
+
+  /**
+   * Returns a checksum of a key and value. It is never 0, so a slot whose value was never written
+   * does not look valid.
+   */
+  private static int checksum(long key, int value) {
+    long h = (key ^ ((long) value << 48)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 31)) * 0x94D049BB133111EBL;
+    return (int) (h ^ (h >>> 32)) | 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("PersistentCache{size=%d, capacity=%d}", size(), capacity());
+  }
+}
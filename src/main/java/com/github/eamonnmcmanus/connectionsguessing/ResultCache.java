@@ -0,0 +1,56 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+/**
+ * Where {@link ConnectionsGuessing#search} remembers its results, keyed on the universe of possible
+ * connections and the number of remaining lives. The universe is a mask over the {@linkplain
+ * PartitionTable A-connections}. A cache may forget or decline to record any result, which makes
+ * the search slower but not wrong.
+ *
+ * <p>{@link TranspositionTable} keeps every result until it is full, and then records no more.
+ * {@link EvictingCache} has a hard size limit, and makes room for new results by evicting the
+ * cheapest old ones.
+ *
+ * <p>Implementations are safe for concurrent use.
+ */
+interface ResultCache {
+  /** The value returned by {@link #get} when there is no entry for the given key. */
+  int ABSENT = -1;
+
+  /**
+   * Returns the recorded result for {@code universe} with {@code lives} remaining, or {@link
+   * #ABSENT} if there is none.
+   */
+  int get(long universe, int lives);
+
+  /** Records that the result for {@code universe} with {@code lives} remaining is {@code value}. */
+  void put(long universe, int lives, int value);
+
+  /**
+   * Removes every entry and resets the statistics. This must not be called while a search is using
+   * the cache.
+   */
+  void clear();
+
+  /** Returns how many entries the cache has room for. */
+  int capacity();
+
+  /** Returns how many entries the cache currently holds. */
+  int size();
+
+  long hits();
+
+  long misses();
+
+  /**
+   * Calls {@code visitor} for each entry in the cache. This may run while a search is using the
+   * cache, without blocking it. Then each entry is seen either as it was before a concurrent change
+   * or as it was after, and entries added during the traversal may or may not be seen.
+   */
+  void forEach(EntryVisitor visitor);
+
+  /** Receives the entries of a cache from {@link ResultCache#forEach}. */
+  @FunctionalInterface
+  interface EntryVisitor {
+    void visit(long universe, int lives, int value);
+  }
+}
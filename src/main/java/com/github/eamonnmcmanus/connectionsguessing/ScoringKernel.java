@@ -0,0 +1,120 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+
+/**
+ * The inner loops that score one guess against many possible solutions at once, producing a mask
+ * of the solutions with each {@link Score}. The masks are indexed by {@link Score#ordinal()}.
+ *
+ * <p>There are two implementations. {@code VectorScoringKernel} uses the incubating Vector API to
+ * AND the guess with many solutions in one instruction, count the bits of each intersection, and
+ * turn the counts straight into masks, with no branches. It is in a separate source directory that
+ * is only compiled by the {@code vector} Maven profile, since using an incubating module always
+ * causes warnings. It is only used if it was compiled, if the {@code jdk.incubator.vector} module
+ * is present, for example because the JVM was started with {@code --add-modules
+ * jdk.incubator.vector}, and if the platform's preferred vector sizes suit it. Otherwise, {@link
+ * #scalar()} does the same thing one solution at a time. The choice is made once, when this class
+ * is initialized.
+ */
+interface ScoringKernel {
+  /**
+   * Scores the given guess, which is an 8-bit mask with 4 bits set, against each of the {@link
+   * PartitionTable#SIZE} A-connections, and sets {@code masks[score.ordinal()]} to the {@link
+   * PartitionTable} mask of A-connections with that score.
+   */
+  void scoreConnections(int guessBits, long[] masks);
+
+  /**
+   * Scores the given guess, which is a 16-bit mask with 4 bits set, against the 64 {@link FullGame}
+   * partitions starting at {@code partitions[start]}, and sets {@code masks[score.ordinal()]} to a
+   * mask where bit <i>i</i> is set if partition {@code start + i} has that score. Only partitions
+   * whose bit is set in {@code word} are scored; the others are clear in every mask.
+   */
+  void scorePartitions(long[] partitions, int start, long word, int guessMask, long[] masks);
+
+  /** Returns the kernel chosen at startup. */
+  static ScoringKernel get() {
+    return Holder.INSTANCE;
+  }
+
+  /** Returns the kernel that works one solution at a time, which is always available. */
+  static ScoringKernel scalar() {
+    return Scalar.INSTANCE;
+  }
+
+  /** Returns the kernel that uses the Vector API, or empty if it can't be used here. */
+  static Optional<ScoringKernel> vector() {
+    return Holder.VECTOR;
+  }
+
+  /** Returns true if the Vector API can be used, so {@link #get()} returns the vector kernel. */
+  static boolean vectorAvailable() {
+    return vector().isPresent();
+  }
+
+  final class Holder {
+    private Holder() {}
+
+    static final Optional<ScoringKernel> VECTOR = loadVector();
+    static final ScoringKernel INSTANCE = VECTOR.orElse(Scalar.INSTANCE);
+
+    // VectorScoringKernel is loaded by name, and only if the module is present, so that it can't
+    // fail to link, and so that the build can leave it out.
+    private static Optional<ScoringKernel> loadVector() {
+      if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+        return Optional.empty();
+      }
+      try {
+        return Optional.of(
+            Class.forName(ScoringKernel.class.getPackageName() + ".VectorScoringKernel")
+                .asSubclass(ScoringKernel.class)
+                .getDeclaredConstructor()
+                .newInstance());
+      } catch (ClassNotFoundException e) {
+        return Optional.empty();
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof UnsupportedOperationException) {
+          return Optional.empty();
+        }
+        throw new LinkageError("Could not create vector kernel", e.getCause());
+      } catch (ReflectiveOperationException e) {
+        throw new LinkageError("Could not create vector kernel", e);
+      }
+    }
+  }
+
+  final class Scalar implements ScoringKernel {
+    private static final Scalar INSTANCE = new Scalar();
+
+    private Scalar() {}
+
+    @Override
+    public void scoreConnections(int guessBits, long[] masks) {
+      Connection guess = new Connection(guessBits);
+      masks[0] = masks[1] = masks[2] = 0;
+      for (int i = 0; i < PartitionTable.SIZE; i++) {
+        Score score = Connection.ALL_A_CONNECTIONS.get(i).scoreFor(guess);
+        masks[score.ordinal()] |= 1L << i;
+      }
+    }
+
+    @Override
+    public void scorePartitions(
+        long[] partitions, int start, long word, int guessMask, long[] masks) {
+      masks[0] = masks[1] = masks[2] = 0;
+      for (long bits = word; bits != 0; bits &= bits - 1) {
+        Score score =
+            FullGame.score(partitions[start + Long.numberOfTrailingZeros(bits)], guessMask);
+        masks[score.ordinal()] |= bits & -bits;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "scalar";
+    }
+  }
+}
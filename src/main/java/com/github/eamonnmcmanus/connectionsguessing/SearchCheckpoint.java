@@ -0,0 +1,305 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Objective;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Periodic snapshots of a search in progress, so that a search that is killed can be resumed
+ * without starting again. A snapshot has two parts. The first is every entry of the search's
+ * {@link ResultCache}, which is every universe whose search has finished. The second is the
+ * frontier: for each universe that is being searched near the top of the recursion, the results of
+ * the guesses that have been tried so far. A resumed search reloads the cache, and then uses the
+ * recorded guess results instead of computing them again, so it gives the same answer as a search
+ * that was never interrupted.
+ *
+ * <p>{@link PersistentCache} also keeps results from one run to the next, but it writes every
+ * result to a memory-mapped file as it goes, and it knows nothing of the frontier. A checkpoint is
+ * written all at once, at a configurable interval, to a compact file that can be copied elsewhere.
+ *
+ * <p>The snapshot is written by a background thread, which reads the cache with {@link
+ * ResultCache#forEach} while the search continues, so the search threads never wait for it. The
+ * snapshot is therefore not taken at a single instant, but that does not matter, since every entry
+ * in it is a correct result whenever it was recorded. The file is written under a temporary name,
+ * forced to the storage device, and only then renamed, so a crash during a write, even a crash of
+ * the machine, leaves the previous checkpoint intact.
+ *
+ * <p>The file is a sequence of big-endian values:
+ *
+ * <pre>
+ * MAGIC VERSION flags
+ * result... 0
+ * guessKey guessResult... 0
+ * crc
+ * </pre>
+ *
+ * where {@code MAGIC}, {@code VERSION}, and {@code flags} are {@code int}. The {@code flags} record
+ * {@link ConnectionsGuessing#onlyGuessUniverse()} and the {@link Objective}, since the results
+ * depend on them. Each {@code result} is a {@code long} packing {@code universe << 28 | lives << 16
+ * | value}, and each {@code guessKey} is a {@code long} packing {@code guess << 47 | lives << 35 |
+ * universe}, followed by an {@code int} {@code guessResult}. Neither can be 0, so a 0 ends each
+ * list. The {@code crc} is an {@code int} CRC-32 of everything before it.
+ */
+final class SearchCheckpoint implements Closeable {
+  static final int MAGIC = 0x4347434B; // "CGCK"
+  static final int VERSION = 1;
+
+  /**
+   * Guess results are recorded for universes whose search is at a depth less than this. The deeper
+   * levels finish quickly and are numerous, so they are only recorded once finished, in the cache.
+   */
+  static final int FRONTIER_DEPTH = 3;
+
+  static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+
+  private static final int UNIVERSE_BITS = 35;
+  private static final int LIVES_BITS = 12;
+  private static final int VALUE_BITS = 16;
+  private static final long UNIVERSE_MASK = (1L << UNIVERSE_BITS) - 1;
+  private static final int LIVES_MASK = (1 << LIVES_BITS) - 1;
+  private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+
+  private final Path file;
+  private final ResultCache cache;
+  private final int flags;
+  private final Map<Long, Integer> guessResults = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService writer;
+  private final AtomicInteger checkpoints = new AtomicInteger();
+  private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+  private SearchCheckpoint(
+      Path file, ResultCache cache, boolean onlyGuessUniverse, Objective objective) {
+    this.file = file;
+    this.cache = cache;
+    this.flags = (objective.ordinal() << 1) | (onlyGuessUniverse ? 1 : 0);
+    this.writer =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("search-checkpoint").daemon().factory());
+  }
+
+  /**
+   * Starts writing checkpoints of a new search to {@code file} every {@code interval}. The search
+   * must use {@code cache} as its {@linkplain ConnectionsGuessing#transpositionTable() result
+   * cache}, and have the given {@code onlyGuessUniverse} and {@code objective}.
+   */
+  static SearchCheckpoint start(
+      Path file,
+      Duration interval,
+      ResultCache cache,
+      boolean onlyGuessUniverse,
+      Objective objective) {
+    var checkpoint = new SearchCheckpoint(file, cache, onlyGuessUniverse, objective);
+    checkpoint.schedule(interval);
+    return checkpoint;
+  }
+
+  /**
+   * Like {@link #start}, but first loads the latest checkpoint from {@code file}, if there is one,
+   * so that the search continues from there. The results go into {@code cache}, which should be
+   * empty and big enough to hold them.
+   *
+   * @throws IOException if the file cannot be read, or is not a valid checkpoint, or was written
+   *     by a search with a different {@code onlyGuessUniverse} or {@code objective}
+   */
+  static SearchCheckpoint resume(
+      Path file,
+      Duration interval,
+      ResultCache cache,
+      boolean onlyGuessUniverse,
+      Objective objective)
+      throws IOException {
+    var checkpoint = new SearchCheckpoint(file, cache, onlyGuessUniverse, objective);
+    try {
+      checkpoint.load();
+    } catch (NoSuchFileException e) {
+      // Nothing to resume, so this is a new search.
+    }
+    checkpoint.schedule(interval);
+    return checkpoint;
+  }
+
+  private void schedule(Duration interval) {
+    checkArgument(interval.isPositive(), "Bad interval %s", interval);
+    long nanos = interval.toNanos();
+    writer.scheduleWithFixedDelay(
+        () -> {
+          try {
+            checkpoint();
+          } catch (IOException e) {
+            // Keep the search going, and try again next time.
+            failure.compareAndSet(null, e);
+          }
+        },
+        nanos,
+        nanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the recorded result of {@code guess} in {@code universe} with {@code lives}
+   * remaining, or {@link ResultCache#ABSENT} if there is none.
+   */
+  int get(long universe, int lives, int guess) {
+    Integer result = guessResults.get(guessKey(universe, lives, guess));
+    return result == null ? ResultCache.ABSENT : result;
+  }
+
+  /** Records that the result of {@code guess} in {@code universe} with {@code lives} is known. */
+  void put(long universe, int lives, int guess, int result) {
+    checkArgument(result >= 0, "Bad result %s", result);
+    guessResults.put(guessKey(universe, lives, guess), result);
+  }
+
+  /** Returns how many guess results are recorded. */
+  int frontierSize() {
+    return guessResults.size();
+  }
+
+  /** Returns how many checkpoints have been written. */
+  int checkpoints() {
+    return checkpoints.get();
+  }
+
+  /**
+   * Writes a checkpoint now. This is called periodically by a background thread, but can also be
+   * called directly. It can run while the search is in progress.
+   */
+  synchronized void checkpoint() throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    var crc = new CRC32();
+    try (var channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      var out =
+          new DataOutputStream(
+              new CheckedOutputStream(
+                  new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(flags);
+      try {
+        cache.forEach(
+            (universe, lives, value) -> {
+              try {
+                out.writeLong(
+                    (universe << (LIVES_BITS + VALUE_BITS)) | ((long) lives << VALUE_BITS) | value);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      out.writeLong(0);
+      for (var entry : guessResults.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeInt(entry.getValue());
+      }
+      out.writeLong(0);
+      out.writeInt((int) crc.getValue());
+      out.flush();
+      // Otherwise the rename could reach the disk before the data, and a crash would leave a
+      // truncated file in place of the previous checkpoint.
+      channel.force(true);
+    }
+    Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    checkpoints.incrementAndGet();
+  }
+
+  private void load() throws IOException {
+    var crc = new CRC32();
+    try (var in =
+        new DataInputStream(
+            new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a search checkpoint: " + file);
+      }
+      if (in.readInt() != flags) {
+        throw new IOException("Checkpoint is for a different kind of search: " + file);
+      }
+      for (long result; (result = in.readLong()) != 0; ) {
+        cache.put(
+            result >>> (LIVES_BITS + VALUE_BITS),
+            (int) (result >>> VALUE_BITS) & LIVES_MASK,
+            (int) result & VALUE_MASK);
+      }
+      for (long key; (key = in.readLong()) != 0; ) {
+        guessResults.put(key, in.readInt());
+      }
+      int expected = (int) crc.getValue();
+      if (in.readInt() != expected) {
+        throw new IOException("Corrupt checkpoint: " + file);
+      }
+    } catch (EOFException e) {
+      throw new IOException("Truncated checkpoint: " + file, e);
+    }
+  }
+
+  /**
+   * Stops the periodic checkpoints and writes a final one.
+   *
+   * @throws IOException if the final checkpoint could not be written. An exception from an
+   *     earlier periodic checkpoint, if any, is attached as a suppressed exception.
+   */
+  @Override
+  public void close() throws IOException {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      checkpoint();
+    } catch (IOException e) {
+      IOException earlier = failure.get();
+      if (earlier != null) {
+        e.addSuppressed(earlier);
+      }
+      throw e;
+    }
+  }
+
+  private static long guessKey(long universe, int lives, int guess) {
+    checkArgument(
+        universe != 0 && (universe & ~UNIVERSE_MASK) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0 && lives <= LIVES_MASK, "Lives out of range: %s", lives);
+    return ((long) guess << (UNIVERSE_BITS + LIVES_BITS))
+        | ((long) lives << UNIVERSE_BITS)
+        | universe;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "SearchCheckpoint{file=%s, frontier=%d, checkpoints=%d}",
+        file, frontierSize(), checkpoints());
+  }
+}
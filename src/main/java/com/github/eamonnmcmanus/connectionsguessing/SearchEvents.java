@@ -0,0 +1,56 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for {@link ConnectionsGuessing#search}. When no recording is running,
+ * these cost next to nothing. To see them, run with for example {@code
+ * -XX:StartFlightRecording:filename=search.jfr} and open the result in JDK Mission Control or with
+ * {@code jfr print --events connectionsguessing.* search.jfr}.
+ */
+final class SearchEvents {
+  private SearchEvents() {}
+
+  /** Per-guess events are only recorded for guesses at fewer than this many levels deep. */
+  static final int MAX_GUESS_EVENT_DEPTH = 2;
+
+  @Name("connectionsguessing.Search")
+  @Label("Search")
+  @Category("Connections Guessing")
+  @Description("A top-level search for the number of connections that can be found")
+  static final class SearchEvent extends Event {
+    @Label("Universe Size")
+    int universeSize;
+
+    @Label("Lives")
+    int lives;
+
+    @Label("Result")
+    int result;
+  }
+
+  @Name("connectionsguessing.GuessSearch")
+  @Label("Guess Search")
+  @Category("Connections Guessing")
+  @Description("The search below one guess near the top of the recursion")
+  static final class GuessSearchEvent extends Event {
+    @Label("Guess")
+    String guess;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Universe Size")
+    int universeSize;
+
+    @Label("Lives")
+    int lives;
+
+    @Label("Result")
+    int result;
+  }
+}
@@ -0,0 +1,214 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import java.util.Formatter;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and timings for {@link ConnectionsGuessing#search}, to help understand why a search is
+ * slow. A disabled instance, which is the default, records nothing, and the search checks {@link
+ * #enabled()} before doing any work on its behalf, so the overhead is a predictable branch. An
+ * enabled instance is safe to use from a {@linkplain ConnectionsGuessing#parallel parallel}
+ * search.
+ *
+ * <p>Depths and lives beyond {@link #MAX_LEVEL} are counted as if they were {@code MAX_LEVEL}.
+ */
+final class SearchMetrics {
+  static final int MAX_LEVEL = 63;
+
+  private static final SearchMetrics DISABLED = new SearchMetrics(false);
+
+  private final boolean enabled;
+  private final LongAdder searchCalls = new LongAdder();
+  private final LongAdder bestForGuessCalls = new LongAdder();
+  private final LongAdder diagnosticBestForGuessCalls = new LongAdder();
+  private final AtomicLongArray nodesByDepth = new AtomicLongArray(MAX_LEVEL + 1);
+  private final AtomicLongArray searchesByUniverseSize =
+      new AtomicLongArray(PartitionTable.SIZE + 1);
+  private final AtomicLongArray nanosByLives = new AtomicLongArray(MAX_LEVEL + 1);
+  private final AtomicLongArray searchesByLives = new AtomicLongArray(MAX_LEVEL + 1);
+  private final AtomicLongArray dedupeCandidatesByDepth = new AtomicLongArray(MAX_LEVEL + 1);
+  private final AtomicLongArray exactDuplicatesByDepth = new AtomicLongArray(MAX_LEVEL + 1);
+  private final AtomicLongArray mirroredDuplicatesByDepth = new AtomicLongArray(MAX_LEVEL + 1);
+
+  private SearchMetrics(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /** Returns a new instance that records metrics. */
+  static SearchMetrics create() {
+    return new SearchMetrics(true);
+  }
+
+  /** Returns the shared instance that records nothing. */
+  static SearchMetrics disabled() {
+    return DISABLED;
+  }
+
+  boolean enabled() {
+    return enabled;
+  }
+
+  /** Records a call to {@code search} at the given depth of recursion. */
+  void recordSearch(int depth, int universeSize) {
+    searchCalls.increment();
+    nodesByDepth.incrementAndGet(Math.min(depth, MAX_LEVEL));
+    searchesByUniverseSize.incrementAndGet(universeSize);
+  }
+
+  /**
+   * Records that a call to {@code search} with the given lives took the given time, including the
+   * time for the searches it called recursively.
+   */
+  void recordSearchTime(int lives, long nanos) {
+    int level = Math.min(lives, MAX_LEVEL);
+    searchesByLives.incrementAndGet(level);
+    nanosByLives.addAndGet(level, nanos);
+  }
+
+  void recordBestForGuess() {
+    bestForGuessCalls.increment();
+  }
+
+  /**
+   * Records a call to {@code bestForGuess} that was only made to report diagnostics about a guess
+   * that the search would otherwise have skipped, because it is equivalent to another guess.
+   */
+  void recordDiagnosticBestForGuess() {
+    diagnosticBestForGuessCalls.increment();
+  }
+
+  /**
+   * Records that {@linkplain ConnectionsGuessing#dedupeGuesses() deduplication} at the given depth
+   * looked at {@code candidates} guesses and removed {@code exact} guesses with the same split as
+   * an earlier guess and {@code mirrored} guesses with that split but ONE_AWAY and TWO_AWAY
+   * swapped.
+   */
+  void recordDedupe(int depth, int candidates, int exact, int mirrored) {
+    int level = Math.min(depth, MAX_LEVEL);
+    dedupeCandidatesByDepth.addAndGet(level, candidates);
+    exactDuplicatesByDepth.addAndGet(level, exact);
+    mirroredDuplicatesByDepth.addAndGet(level, mirrored);
+  }
+
+  long searchCalls() {
+    return searchCalls.sum();
+  }
+
+  long bestForGuessCalls() {
+    return bestForGuessCalls.sum();
+  }
+
+  long diagnosticBestForGuessCalls() {
+    return diagnosticBestForGuessCalls.sum();
+  }
+
+  long nodesAtDepth(int depth) {
+    return nodesByDepth.get(depth);
+  }
+
+  long searchesWithUniverseSize(int size) {
+    return searchesByUniverseSize.get(size);
+  }
+
+  long nanosAtLives(int lives) {
+    return nanosByLives.get(lives);
+  }
+
+  long dedupeCandidatesAtDepth(int depth) {
+    return dedupeCandidatesByDepth.get(depth);
+  }
+
+  long exactDuplicatesAtDepth(int depth) {
+    return exactDuplicatesByDepth.get(depth);
+  }
+
+  long mirroredDuplicatesAtDepth(int depth) {
+    return mirroredDuplicatesByDepth.get(depth);
+  }
+
+  /** Sets every count and timing back to 0. */
+  void reset() {
+    searchCalls.reset();
+    bestForGuessCalls.reset();
+    diagnosticBestForGuessCalls.reset();
+    for (int i = 0; i <= MAX_LEVEL; i++) {
+      nodesByDepth.set(i, 0);
+      nanosByLives.set(i, 0);
+      searchesByLives.set(i, 0);
+      dedupeCandidatesByDepth.set(i, 0);
+      exactDuplicatesByDepth.set(i, 0);
+      mirroredDuplicatesByDepth.set(i, 0);
+    }
+    for (int i = 0; i <= PartitionTable.SIZE; i++) {
+      searchesByUniverseSize.set(i, 0);
+    }
+  }
+
+  /**
+   * Returns a human-readable summary of the metrics, including the hit rate of the given
+   * transposition table.
+   */
+  String summary(ResultCache table) {
+    if (!enabled) {
+      return "Metrics are disabled\n";
+    }
+    Formatter f = new Formatter();
+    f.format("search calls: %d%n", searchCalls());
+    f.format("bestForGuess calls: %d%n", bestForGuessCalls());
+    f.format("  of which only for diagnostics: %d%n", diagnosticBestForGuessCalls());
+    long hits = table.hits();
+    long misses = table.misses();
+    double hitRate = hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses);
+    f.format(
+        "transposition table: %d entries, %d hits, %d misses, hit rate %.1f%%%n",
+        table.size(), hits, misses, hitRate);
+    if (table instanceof EvictingCache evicting) {
+      f.format(
+          "  capacity %d entries (%d bytes), %d evictions, %d rejected inserts%n",
+          evicting.capacity(), evicting.bytes(), evicting.evictions(), evicting.rejections());
+    }
+    f.format("search calls by depth:%n");
+    for (int depth = 0; depth <= MAX_LEVEL; depth++) {
+      long nodes = nodesAtDepth(depth);
+      if (nodes > 0) {
+        f.format("  %3d: %d%n", depth, nodes);
+      }
+    }
+    f.format("search calls by universe size:%n");
+    for (int size = 0; size <= PartitionTable.SIZE; size++) {
+      long count = searchesWithUniverseSize(size);
+      if (count > 0) {
+        f.format("  %3d: %d%n", size, count);
+      }
+    }
+    f.format("time in search by lives, including recursive calls:%n");
+    for (int lives = MAX_LEVEL; lives >= 0; lives--) {
+      long count = searchesByLives.get(lives);
+      if (count > 0) {
+        f.format("  %3d: %.3f ms in %d calls%n", lives, nanosAtLives(lives) / 1e6, count);
+      }
+    }
+    boolean headerPrinted = false;
+    for (int depth = 0; depth <= MAX_LEVEL; depth++) {
+      long candidates = dedupeCandidatesAtDepth(depth);
+      if (candidates > 0) {
+        if (!headerPrinted) {
+          f.format("guesses removed as duplicate splits by depth:%n");
+          headerPrinted = true;
+        }
+        long exact = exactDuplicatesAtDepth(depth);
+        long mirrored = mirroredDuplicatesAtDepth(depth);
+        f.format(
+            "  %3d: %d of %d (%.1f%%), %d exact, %d mirrored%n",
+            depth,
+            exact + mirrored,
+            candidates,
+            100.0 * (exact + mirrored) / candidates,
+            exact,
+            mirrored);
+      }
+    }
+    return f.toString();
+  }
+}
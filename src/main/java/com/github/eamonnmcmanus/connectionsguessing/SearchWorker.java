@@ -0,0 +1,59 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ * A worker process for {@link ShardedSearch}. It reads requests from standard input, one per line,
+ * each of which is a universe mask and a number of lives separated by a space. For each request it
+ * writes a line to standard output with the universe, the lives, and the result of {@link
+ * ConnectionsGuessing#search(long, int)}. It exits when standard input is closed.
+ *
+ * <p>Results are kept in one transposition table for the life of the process, so later requests
+ * benefit from earlier ones. The only argument is {@code --only-guess-universe}, to set {@link
+ * ConnectionsGuessing#onlyGuessUniverse()}.
+ */
+public final class SearchWorker {
+  private SearchWorker() {}
+
+  public static void main(String[] args) throws IOException {
+    run(args, request -> {});
+  }
+
+  /**
+   * Does what {@link #main} does, but first calls {@code beforeRequest} with the number of each
+   * request, counting from 0. Tests use this to make a worker fail partway through.
+   */
+  static void run(String[] args, IntConsumer beforeRequest) throws IOException {
+    boolean onlyGuessUniverse = false;
+    for (String arg : args) {
+      switch (arg) {
+        case "--only-guess-universe" -> onlyGuessUniverse = true;
+        default -> throw new IllegalArgumentException("Unknown argument " + arg);
+      }
+    }
+    var guessing =
+        ConnectionsGuessing.builder()
+            .onlyGuessUniverse(onlyGuessUniverse)
+            .transpositionTable(new TranspositionTable(1 << 20))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .build();
+    var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    var out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+    int request = 0;
+    for (String line; (line = in.readLine()) != null; ) {
+      beforeRequest.accept(request++);
+      String[] words = line.split(" ");
+      long universe = Long.parseLong(words[0]);
+      int lives = Integer.parseInt(words[1]);
+      out.println(universe + " " + lives + " " + guessing.search(universe, lives));
+      out.flush();
+    }
+  }
+}
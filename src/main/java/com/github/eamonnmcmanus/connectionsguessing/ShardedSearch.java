@@ -0,0 +1,340 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A search that is shared between several {@link SearchWorker} processes, for when one JVM is not
+ * enough. The coordinator, which is this class, expands the search tree to a fixed depth, and
+ * collects the distinct subproblems at that depth, each a universe and a number of lives. It hands
+ * those out to the workers over their standard input and output, and then combines the results
+ * exactly as {@link ConnectionsGuessing#search} does: a guess is worth 1 if it can match, plus the
+ * results for its ONE_AWAY and TWO_AWAY sets with one fewer life, and a universe is worth the best
+ * of its guesses. So the answer is the same as a single-process search.
+ *
+ * <p>Each worker is served by a coordinator thread that takes subproblems from a shared queue. If a
+ * worker process fails, because it exits or its pipe breaks or it does not answer a request within
+ * a deadline, the thread kills it, puts the subproblem back on the queue, and starts a replacement
+ * process, up to a limit on the total number of restarts.
+ * Worker processes are kept for the life of this object, so they can reuse their transposition
+ * tables from one search to the next. They run with the same Java executable and class path as
+ * this process.
+ */
+final class ShardedSearch implements Closeable {
+  static final int DEFAULT_EXPAND_DEPTH = 2;
+
+  /**
+   * How long a worker has to answer one request. A subproblem at the default depth takes seconds
+   * at most, so a worker that takes this long is assumed to be stuck.
+   */
+  static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofMinutes(10);
+
+  private final int expandDepth;
+  private final boolean onlyGuessUniverse;
+  private final ImmutableList<String> workerCommand;
+  private final Duration requestTimeout;
+  private final int maxRestarts;
+  private final AtomicInteger restarts = new AtomicInteger();
+  private final WorkerProcess[] workers;
+
+  /**
+   * Constructs a coordinator for {@code workerCount} {@link SearchWorker} processes, each of which
+   * has {@link #DEFAULT_REQUEST_TIMEOUT} to answer a request.
+   *
+   * @param expandDepth how many levels of guesses the coordinator expands itself
+   * @param onlyGuessUniverse as for {@link ConnectionsGuessing#onlyGuessUniverse()}
+   * @param maxRestarts how many times in total a failed worker can be replaced
+   */
+  ShardedSearch(int workerCount, int expandDepth, boolean onlyGuessUniverse, int maxRestarts) {
+    this(
+        workerCount,
+        expandDepth,
+        onlyGuessUniverse,
+        SearchWorker.class.getName(),
+        List.of(),
+        DEFAULT_REQUEST_TIMEOUT,
+        maxRestarts);
+  }
+
+  /**
+   * Like the other constructor, but with a different worker. Tests use this to run workers that
+   * fail.
+   *
+   * @param workerClass the name of a class whose {@code main} works like {@link SearchWorker#main}
+   * @param extraWorkerArgs extra arguments for the worker's {@code main}
+   * @param requestTimeout how long a worker has to answer one request
+   */
+  ShardedSearch(
+      int workerCount,
+      int expandDepth,
+      boolean onlyGuessUniverse,
+      String workerClass,
+      List<String> extraWorkerArgs,
+      Duration requestTimeout,
+      int maxRestarts) {
+    checkArgument(workerCount > 0, "Bad worker count %s", workerCount);
+    checkArgument(expandDepth >= 0, "Bad depth %s", expandDepth);
+    checkArgument(requestTimeout.isPositive(), "Bad timeout %s", requestTimeout);
+    this.expandDepth = expandDepth;
+    this.onlyGuessUniverse = onlyGuessUniverse;
+    this.requestTimeout = requestTimeout;
+    this.maxRestarts = maxRestarts;
+    var command =
+        ImmutableList.<String>builder()
+            .add(Path.of(System.getProperty("java.home"), "bin", "java").toString())
+            .add("-cp", System.getProperty("java.class.path"))
+            .add(workerClass);
+    if (onlyGuessUniverse) {
+      command.add("--only-guess-universe");
+    }
+    this.workerCommand = command.addAll(extraWorkerArgs).build();
+    this.workers = new WorkerProcess[workerCount];
+  }
+
+  /** Returns how many times a failed worker has been replaced. */
+  int restarts() {
+    return restarts.get();
+  }
+
+  /** Returns the same result as {@link ConnectionsGuessing#search(long, int)}. */
+  int search(long universe, int lives) throws IOException, InterruptedException {
+    checkArgument(
+        universe != 0 && (universe & ~PartitionTable.ALL) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    Set<Long> subproblems = new LinkedHashSet<>();
+    collectSubproblems(universe, lives, expandDepth, subproblems);
+    Map<Long, Integer> results = solve(subproblems);
+    return combine(universe, lives, expandDepth, results);
+  }
+
+  /** Returns the key of a subproblem, which packs the universe and the lives. */
+  private static long key(long universe, int lives) {
+    return ((long) lives << PartitionTable.SIZE) | universe;
+  }
+
+  /** Returns the result for a universe and lives that needs no search, or -1. */
+  private static int trivialResult(long universe, int lives) {
+    return lives == 1 || Long.bitCount(universe) == 1 ? 1 : -1;
+  }
+
+  private void collectSubproblems(long universe, int lives, int depth, Set<Long> subproblems) {
+    if (trivialResult(universe, lives) >= 0) {
+      return;
+    }
+    if (depth == 0) {
+      subproblems.add(key(universe, lives));
+      return;
+    }
+    for (long rest = guesses(universe); rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      long oneAway = universe & PartitionTable.oneAwayMask(guess);
+      long twoAway = universe & PartitionTable.twoAwayMask(guess);
+      if (oneAway == universe || twoAway == universe) {
+        continue; // The guess tells us nothing.
+      }
+      if (oneAway != 0) {
+        collectSubproblems(oneAway, lives - 1, depth - 1, subproblems);
+      }
+      if (twoAway != 0) {
+        collectSubproblems(twoAway, lives - 1, depth - 1, subproblems);
+      }
+    }
+  }
+
+  private int combine(long universe, int lives, int depth, Map<Long, Integer> results) {
+    if (universe == 0) {
+      return 0;
+    }
+    int trivial = trivialResult(universe, lives);
+    if (trivial >= 0) {
+      return trivial;
+    }
+    if (depth == 0) {
+      return results.get(key(universe, lives));
+    }
+    int best = 0;
+    for (long rest = guesses(universe); rest != 0; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      long oneAway = universe & PartitionTable.oneAwayMask(guess);
+      long twoAway = universe & PartitionTable.twoAwayMask(guess);
+      if (oneAway == universe || twoAway == universe) {
+        continue;
+      }
+      int value =
+          ((universe & PartitionTable.matchMask(guess)) != 0 ? 1 : 0)
+              + combine(oneAway, lives - 1, depth - 1, results)
+              + combine(twoAway, lives - 1, depth - 1, results);
+      best = Math.max(best, value);
+    }
+    return best;
+  }
+
+  private long guesses(long universe) {
+    return onlyGuessUniverse ? universe : PartitionTable.ALL;
+  }
+
+  /** Has the workers compute the result for each of the given subproblem keys. */
+  private Map<Long, Integer> solve(Set<Long> subproblems)
+      throws IOException, InterruptedException {
+    Map<Long, Integer> results = new ConcurrentHashMap<>();
+    BlockingQueue<Long> pending = new LinkedBlockingQueue<>(subproblems);
+    CountDownLatch remaining = new CountDownLatch(subproblems.size());
+    try (ExecutorService executor = Executors.newFixedThreadPool(workers.length)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < workers.length; i++) {
+        int worker = i;
+        futures.add(executor.submit(() -> serve(worker, pending, results, remaining)));
+      }
+      while (!remaining.await(100, TimeUnit.MILLISECONDS)) {
+        if (futures.stream().allMatch(Future::isDone)) {
+          throw new IOException("All workers failed with " + remaining.getCount() + " left");
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Sends subproblems to worker number {@code worker} until there are none left, replacing the
+   * worker process if it fails. Returns without finishing if there have been too many restarts.
+   */
+  private Void serve(
+      int worker,
+      BlockingQueue<Long> pending,
+      Map<Long, Integer> results,
+      CountDownLatch remaining)
+      throws InterruptedException {
+    while (remaining.getCount() > 0) {
+      Long key = pending.poll(10, TimeUnit.MILLISECONDS);
+      if (key == null) {
+        continue;
+      }
+      try {
+        if (workers[worker] == null) {
+          workers[worker] = new WorkerProcess(workerCommand, requestTimeout);
+        }
+        long universe = key & PartitionTable.ALL;
+        int lives = (int) (key >>> PartitionTable.SIZE);
+        results.put(key, workers[worker].search(universe, lives));
+        remaining.countDown();
+      } catch (IOException | RuntimeException e) {
+        pending.add(key);
+        if (workers[worker] != null) {
+          workers[worker].close();
+          workers[worker] = null;
+        }
+        if (restarts.incrementAndGet() > maxRestarts) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Stops the worker processes. */
+  @Override
+  public void close() {
+    for (int i = 0; i < workers.length; i++) {
+      if (workers[i] != null) {
+        workers[i].close();
+        workers[i] = null;
+      }
+    }
+  }
+
+  /**
+   * One {@link SearchWorker} process and the pipes to it. Responses are read on a separate thread,
+   * so that a request can time out even if the worker never writes anything.
+   */
+  private static final class WorkerProcess {
+    private final Process process;
+    private final PrintStream requests;
+    private final BufferedReader responses;
+    private final ExecutorService reader =
+        Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("sharded-search-reader").daemon().factory());
+    private final Duration timeout;
+
+    WorkerProcess(List<String> command, Duration timeout) throws IOException {
+      this.process =
+          new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      this.requests = new PrintStream(process.getOutputStream(), false, StandardCharsets.UTF_8);
+      this.responses =
+          new BufferedReader(
+              new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+      this.timeout = timeout;
+    }
+
+    int search(long universe, int lives) throws IOException, InterruptedException {
+      requests.println(universe + " " + lives);
+      requests.flush();
+      if (requests.checkError()) {
+        throw new IOException("Could not send request to worker");
+      }
+      Future<String> response = reader.submit(responses::readLine);
+      String line;
+      try {
+        line = response.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        throw new IOException(
+            "Worker did not answer within " + timeout + " for " + universe + " " + lives);
+      } catch (ExecutionException e) {
+        throw new IOException("Could not read response from worker", e.getCause());
+      }
+      if (line == null) {
+        throw new IOException("Worker exited with status " + waitForExit());
+      }
+      String[] words = line.split(" ");
+      if (words.length != 3
+          || Long.parseLong(words[0]) != universe
+          || Integer.parseInt(words[1]) != lives) {
+        throw new IOException("Unexpected response from worker: " + line);
+      }
+      return Integer.parseInt(words[2]);
+    }
+
+    private int waitForExit() {
+      try {
+        return process.waitFor();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return -1;
+      }
+    }
+
+    /**
+     * Stops the process. It may be stuck, so it is not asked to stop. That also ends a read that is
+     * waiting for it.
+     */
+    void close() {
+      requests.close();
+      process.destroyForcibly();
+      reader.shutdown();
+    }
+  }
+}
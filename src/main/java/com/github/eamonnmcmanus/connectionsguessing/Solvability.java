@@ -0,0 +1,84 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Answers "how many lives do we need to be sure of finding the connection?" directly, rather than
+ * by counting with {@link ConnectionsGuessing#search} for increasing numbers of lives until the
+ * count is the whole universe.
+ *
+ * <p>{@link #solvableWithin} is a decision procedure: a universe is solvable within <i>L</i> lives
+ * if there is a guess whose ONE_AWAY and TWO_AWAY sets are both solvable within <i>L</i> - 1
+ * lives. (The MATCH set has at most one connection, which the guess finds.) That means we can stop
+ * at the first guess that works, and abandon a guess as soon as one of its sets fails, which is
+ * much less work than finding the exact count for every guess. We also fail immediately if the
+ * universe is bigger than the {@linkplain Bounds bound} for its size. {@link #minimumLives} then
+ * tries 1, 2, 3... lives until the universe is solvable.
+ *
+ * <p>Results are cached in a {@link TranspositionTable}, with 1 for solvable and 0 for not. An
+ * instance is safe for concurrent use, like the table.
+ */
+final class Solvability {
+  private static final int SOLVABLE = 1;
+  private static final int NOT_SOLVABLE = 0;
+
+  private final boolean onlyGuessUniverse;
+  private final TranspositionTable table;
+
+  /**
+   * Constructs an instance that considers every guess, or only guesses in the universe if {@code
+   * onlyGuessUniverse}, as for {@link ConnectionsGuessing#onlyGuessUniverse()}.
+   */
+  Solvability(boolean onlyGuessUniverse) {
+    this.onlyGuessUniverse = onlyGuessUniverse;
+    this.table = new TranspositionTable(TranspositionTable.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Returns true if every connection in {@code universe} can be found within {@code lives}
+   * guesses.
+   */
+  boolean solvableWithin(long universe, int lives) {
+    checkArgument(
+        universe != 0 && (universe & ~PartitionTable.ALL) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    return solvable(universe, lives);
+  }
+
+  /** Returns the smallest number of lives with which every connection in the universe is found. */
+  int minimumLives(long universe) {
+    // With as many lives as connections, guessing each connection in turn finds them all.
+    for (int lives = 1; ; lives++) {
+      if (solvableWithin(universe, lives)) {
+        return lives;
+      }
+    }
+  }
+
+  private boolean solvable(long universe, int lives) {
+    int size = Long.bitCount(universe);
+    if (size <= 1) {
+      return true;
+    }
+    if (Bounds.maxSolvable(size, lives) < size) {
+      return false;
+    }
+    int cached = table.get(universe, lives);
+    if (cached != TranspositionTable.ABSENT) {
+      return cached == SOLVABLE;
+    }
+    boolean result = false;
+    long guesses = onlyGuessUniverse ? universe : PartitionTable.ALL;
+    for (long rest = guesses; rest != 0 && !result; rest &= rest - 1) {
+      int guess = Long.numberOfTrailingZeros(rest);
+      long oneAway = universe & PartitionTable.oneAwayMask(guess);
+      long twoAway = universe & PartitionTable.twoAwayMask(guess);
+      if (oneAway == universe || twoAway == universe) {
+        continue; // The guess tells us nothing.
+      }
+      result = solvable(oneAway, lives - 1) && solvable(twoAway, lives - 1);
+    }
+    table.put(universe, lives, result ? SOLVABLE : NOT_SOLVABLE);
+    return result;
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+
+/**
+ * A strategy for finding a connection: a graph where each node says which guess to make, and has
+ * a child for each of the ONE_AWAY and TWO_AWAY responses to that guess. Nodes are identified by
+ * {@code int} values, so following a strategy allocates nothing. A strategy can come from {@link
+ * ConnectionsGuessing#search} as a {@link StrategyTree} or a {@link MappedStrategy}, or it can be
+ * written by hand.
+ */
+interface Strategy {
+  /** Returns the node for the first guess. */
+  int root();
+
+  /**
+   * Returns the guess to make at {@code node}, as an index into {@link
+   * ConnectionsGuessing.Connection#ALL_A_CONNECTIONS}.
+   */
+  int guess(int node);
+
+  /**
+   * Returns the node to go to after the given response to the guess at {@code node}, or {@link
+   * StrategyTree#NO_CHILD} if there are no lives left then. The response must not be {@link
+   * Score#MATCH}, since that ends the game.
+   */
+  int child(int node, Score response);
+}
@@ -0,0 +1,253 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score.ONE_AWAY;
+import static com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score.TWO_AWAY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Longs;
+import java.util.function.Consumer;
+import java.util.function.LongToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Plays a {@link Strategy} against a stream of hidden connections, and reports how well it did.
+ * This checks a strategy from {@link ConnectionsGuessing#search}, or one written by hand, either
+ * against each of the 35 possible connections once, or against millions of connections chosen at
+ * random.
+ *
+ * <p>The responses to guesses are from {@link PartitionTable}, which gives the same score as {@link
+ * ConnectionsGuessing.Connection#scoreFor}. Playing a game allocates nothing: the hidden
+ * connection is a bit in a {@code long}, the strategy's nodes are {@code int} values, and the
+ * results are added to counters. The games are divided into batches of {@value #BATCH_GAMES}, and
+ * each batch is divided into chunks that are played in parallel in the common {@link
+ * java.util.concurrent.ForkJoinPool}. After each batch, the totals so far are reported, so a long
+ * run shows its progress.
+ */
+final class StrategySimulator {
+  static final int BATCH_GAMES = 1 << 20;
+  private static final int CHUNK_GAMES = 1 << 14;
+
+  /**
+   * A strategy that makes this many guesses must have repeated one, since there are only this many
+   * different guesses. So it will never finish.
+   */
+  static final int MAX_GUESSES = PartitionTable.SIZE;
+
+  private StrategySimulator() {}
+
+  /**
+   * The results of playing some games.
+   *
+   * @param games how many games were played
+   * @param guessHistogram element <i>k</i>, for 1 ≤ <i>k</i> ≤ {@value #MAX_GUESSES}, is how many
+   *     games found the connection with the <i>k</i>th guess, and element 0 is how many games did
+   *     not find it
+   * @param worstGuesses the largest number of guesses that any game needed to find the connection,
+   *     or 0 if no game found it
+   * @param worstConnections the hidden connections that needed {@code worstGuesses} guesses, as a
+   *     mask over the {@linkplain PartitionTable A-connections}
+   * @param lostConnections the hidden connections that were not found, as a mask
+   * @param seconds how long it took to play the games
+   */
+  record Report(
+      long games,
+      ImmutableList<Long> guessHistogram,
+      int worstGuesses,
+      long worstConnections,
+      long lostConnections,
+      double seconds) {
+    long wins() {
+      return games - guessHistogram.get(0);
+    }
+
+    double winRate() {
+      return (double) wins() / games;
+    }
+
+    double meanGuessesToWin() {
+      long total = 0;
+      for (int k = 1; k < guessHistogram.size(); k++) {
+        total += k * guessHistogram.get(k);
+      }
+      return (double) total / wins();
+    }
+
+    double gamesPerSecond() {
+      return games / seconds;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d games in %.2fs: %.0f games/s, win rate %.4f, mean guesses to win %.3f, histogram %s,"
+              + " worst %d guesses for %s, lost %s",
+          games,
+          seconds,
+          gamesPerSecond(),
+          winRate(),
+          meanGuessesToWin(),
+          guessHistogram.subList(0, worstGuesses + 1),
+          worstGuesses,
+          ConnectionsGuessing.ConnectionSet.ofAMask(worstConnections),
+          ConnectionsGuessing.ConnectionSet.ofAMask(lostConnections));
+    }
+  }
+
+  /** Plays {@code strategy} once against each of the 35 possible connections. */
+  static Report exhaustive(Strategy strategy) {
+    return run(strategy, PartitionTable.SIZE, game -> (int) game, report -> {});
+  }
+
+  /**
+   * Plays {@code strategy} in {@code games} games, where each hidden connection is chosen
+   * uniformly at random. The same {@code seed} gives the same connections. After each batch of
+   * games, {@code progress} receives the totals so far.
+   */
+  static Report sampled(Strategy strategy, long games, long seed, Consumer<Report> progress) {
+    return run(strategy, games, game -> randomConnection(seed, game), progress);
+  }
+
+  /**
+   * Plays {@code strategy} in {@code games} games, where the hidden connection in game <i>i</i> is
+   * {@code connections.applyAsInt(i)}, an index into {@link
+   * ConnectionsGuessing.Connection#ALL_A_CONNECTIONS}. That function is called from several
+   * threads at once. After each batch of games, {@code progress} receives the totals so far.
+   *
+   * @throws IllegalStateException if the strategy makes more than {@value #MAX_GUESSES} guesses
+   *     in a game
+   */
+  static Report run(
+      Strategy strategy, long games, LongToIntFunction connections, Consumer<Report> progress) {
+    checkArgument(games > 0, "Bad game count %s", games);
+    long start = System.nanoTime();
+    var total = new Tally();
+    for (long batchStart = 0; batchStart < games; batchStart += BATCH_GAMES) {
+      long batchEnd = Math.min(games, batchStart + BATCH_GAMES);
+      long first = batchStart;
+      int chunks = (int) ((batchEnd - batchStart + CHUNK_GAMES - 1) / CHUNK_GAMES);
+      Tally batch =
+          IntStream.range(0, chunks)
+              .parallel()
+              .collect(
+                  Tally::new,
+                  (tally, chunk) -> {
+                    long chunkStart = first + (long) chunk * CHUNK_GAMES;
+                    long chunkEnd = Math.min(batchEnd, chunkStart + CHUNK_GAMES);
+                    for (long game = chunkStart; game < chunkEnd; game++) {
+                      int connection = connections.applyAsInt(game);
+                      tally.add(connection, play(strategy, connection));
+                    }
+                  },
+                  Tally::add);
+      total.add(batch);
+      Report report = total.report(System.nanoTime() - start);
+      progress.accept(report);
+      if (batchEnd == games) {
+        return report;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  /**
+   * Plays one game of {@code strategy} with the given hidden connection, and returns the number of
+   * the guess that found it, or 0 if it was not found.
+   */
+  static int play(Strategy strategy, int connection) {
+    long bit = 1L << connection;
+    int node = strategy.root();
+    for (int guesses = 1; guesses <= MAX_GUESSES; guesses++) {
+      int guess = strategy.guess(node);
+      if ((PartitionTable.matchMask(guess) & bit) != 0) {
+        return guesses;
+      }
+      Score response = (PartitionTable.oneAwayMask(guess) & bit) != 0 ? ONE_AWAY : TWO_AWAY;
+      node = strategy.child(node, response);
+      if (node == StrategyTree.NO_CHILD) {
+        return 0;
+      }
+    }
+    throw new IllegalStateException("Strategy made more than " + MAX_GUESSES + " guesses");
+  }
+
+  /** Returns the hidden connection for the given game, using a hash of the seed and the game. */
+  private static int randomConnection(long seed, long game) {
+    // The finalizer from SplitMix64, so consecutive games get unrelated connections.
+    long h = seed + game * 0x9E3779B97F4A7C15L;
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    h ^= h >>> 31;
+    return (int) (((h >>> 32) * PartitionTable.SIZE) >>> 32);
+  }
+
+  /** The totals for some games. Each thread adds to its own tally, and they are combined later. */
+  private static final class Tally {
+    private final long[] histogram = new long[MAX_GUESSES + 1];
+    private long games;
+    private int worstGuesses;
+    private long worstConnections;
+    private long lostConnections;
+
+    void add(int connection, int guesses) {
+      games++;
+      histogram[guesses]++;
+      if (guesses == 0) {
+        lostConnections |= 1L << connection;
+      } else if (guesses > worstGuesses) {
+        worstGuesses = guesses;
+        worstConnections = 1L << connection;
+      } else if (guesses == worstGuesses) {
+        worstConnections |= 1L << connection;
+      }
+    }
+
+    void add(Tally that) {
+      games += that.games;
+      for (int k = 0; k < histogram.length; k++) {
+        histogram[k] += that.histogram[k];
+      }
+      lostConnections |= that.lostConnections;
+      if (that.worstGuesses > worstGuesses) {
+        worstGuesses = that.worstGuesses;
+        worstConnections = that.worstConnections;
+      } else if (that.worstGuesses == worstGuesses) {
+        worstConnections |= that.worstConnections;
+      }
+    }
+
+    Report report(long nanos) {
+      return new Report(
+          games,
+          Longs.asList(histogram).stream().collect(toImmutableList()),
+          worstGuesses,
+          worstConnections,
+          lostConnections,
+          nanos / 1e9);
+    }
+  }
+
+  /**
+   * Plays the optimal strategies for 4 to 6 lives against each connection, and then against a
+   * large number of random connections, printing the results and how many games per second were
+   * played.
+   */
+  public static void main(String[] args) {
+    long games = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000;
+    var guessing =
+        ConnectionsGuessing.builder()
+            .transpositionTable(new TranspositionTable(1 << 20))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .build();
+    for (int lives = 4; lives <= 6; lives++) {
+      var strategy = StrategyTree.build(guessing, PartitionTable.ALL, lives);
+      System.out.printf("With %d lives, each connection once: %s\n", lives, exhaustive(strategy));
+      Report random = sampled(strategy, games, lives, report -> {});
+      System.out.printf("With %d lives, random connections: %s\n", lives, random);
+    }
+  }
+}
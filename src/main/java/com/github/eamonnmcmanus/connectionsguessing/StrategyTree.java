@@ -0,0 +1,226 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An optimal strategy, as found by {@link ConnectionsGuessing#search}. Each node says which guess
+ * to make, and has a child for each of the ONE_AWAY and TWO_AWAY outcomes of that guess. (The MATCH
+ * outcome means we are done.) Identical subtrees are shared, so the strategy is a DAG rather than
+ * a tree. Two nodes are identical if they have the same guess, flags, and solvable count, and
+ * their children are identical. Nodes are built bottom-up, so by the time a node is finished its
+ * children have already been reduced to one index each, and the node can be looked up by its
+ * contents. Within the strategy for one universe, the nodes reached by different responses have
+ * disjoint universes, since each hidden connection follows only one path. Sharing matters when one
+ * {@link Builder} makes strategies for several universes that overlap, such as {A, B} and {A, C}
+ * with one life left, where both guess A.
+ *
+ * <p>Where several guesses are equally good, the strategy uses the first one in the order of {@link
+ * ConnectionsGuessing.Connection#ALL_A_CONNECTIONS}. Guesses are represented by their index in that
+ * list.
+ *
+ * <p>The strategy can be {@linkplain #write written} to a file where every node is a fixed-width
+ * record, and then read back with {@link MappedStrategy}. The file format is a header of 4
+ * big-endian {@code int} values:
+ *
+ * <pre>
+ * MAGIC VERSION nodeCount rootIndex
+ * </pre>
+ *
+ * followed by {@code nodeCount} records of {@value #NODE_BYTES} bytes each:
+ *
+ * <pre>
+ * byte guess; byte flags; short solvable; int oneAwayChild; int twoAwayChild
+ * </pre>
+ *
+ * where {@code flags} has {@link #FLAG_GUESS_POSSIBLE} set if the guess is in the universe (so it
+ * can be correct), {@code solvable} is how many connections in the universe this node can find, and
+ * a child is {@link #NO_CHILD} if that outcome is impossible or there are no lives left after it.
+ */
+final class StrategyTree implements Strategy {
+  static final int MAGIC = 0x43475354; // "CGST"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int NODE_BYTES = 12;
+  static final int NO_CHILD = -1;
+  static final int NO_GUESS = -1;
+  static final int FLAG_GUESS_POSSIBLE = 1;
+
+  private final int root;
+  private final byte[] guesses;
+  private final byte[] flags;
+  private final short[] solvable;
+  private final int[] oneAwayChildren;
+  private final int[] twoAwayChildren;
+
+  private StrategyTree(List<Node> nodes, int root) {
+    this.root = root;
+    int n = nodes.size();
+    this.guesses = new byte[n];
+    this.flags = new byte[n];
+    this.solvable = new short[n];
+    this.oneAwayChildren = new int[n];
+    this.twoAwayChildren = new int[n];
+    for (int i = 0; i < n; i++) {
+      Node node = nodes.get(i);
+      guesses[i] = (byte) node.guess;
+      flags[i] = (byte) node.flags;
+      solvable[i] = (short) node.solvable;
+      oneAwayChildren[i] = node.oneAwayChild;
+      twoAwayChildren[i] = node.twoAwayChild;
+    }
+  }
+
+  /** The contents of one record, which are also its identity when subtrees are shared. */
+  private record Node(int guess, int flags, int solvable, int oneAwayChild, int twoAwayChild) {}
+
+  /**
+   * Builds the optimal strategy for finding a connection in {@code universe} with {@code lives}
+   * guesses, using the given engine to evaluate guesses.
+   */
+  static StrategyTree build(ConnectionsGuessing guessing, long universe, int lives) {
+    checkArgument(lives > 0, "Bad lives %s", lives);
+    var builder = new Builder(guessing);
+    return builder.build(builder.node(universe, lives));
+  }
+
+  /**
+   * Builds strategies, sharing identical subtrees between all the strategies it builds. Each call
+   * to {@link #node} returns the root of a strategy, and {@link #build} makes a strategy from one
+   * of those roots that can use every node built so far.
+   */
+  static final class Builder {
+    private final ConnectionsGuessing guessing;
+    private final List<Node> nodes = new ArrayList<>();
+
+    /** The index of the node for each universe and lives already seen, so each is built once. */
+    private final Map<Long, Integer> nodeIndexes = new HashMap<>();
+
+    /** The index of each distinct node, so identical subtrees share one record. */
+    private final Map<Node, Integer> internedNodes = new HashMap<>();
+
+    Builder(ConnectionsGuessing guessing) {
+      this.guessing = guessing;
+    }
+
+    /** Returns a strategy whose root is the given node index. */
+    StrategyTree build(int root) {
+      checkElementIndex(root, nodes.size(), "root");
+      return new StrategyTree(nodes, root);
+    }
+
+    /**
+     * Returns the index of the node for the given universe and lives, creating it unless an
+     * identical node already exists.
+     */
+    int node(long universe, int lives) {
+      long key = ((long) lives << PartitionTable.SIZE) | universe;
+      Integer existing = nodeIndexes.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      int solvable = guessing.search(universe, lives);
+      int guess = guessing.bestGuess(universe, lives);
+      int oneAwayChild = NO_CHILD;
+      int twoAwayChild = NO_CHILD;
+      if (lives > 1) {
+        long oneAway = universe & PartitionTable.oneAwayMask(guess);
+        long twoAway = universe & PartitionTable.twoAwayMask(guess);
+        if (oneAway != 0) {
+          oneAwayChild = node(oneAway, lives - 1);
+        }
+        if (twoAway != 0) {
+          twoAwayChild = node(twoAway, lives - 1);
+        }
+      }
+      int flags = (universe & (1L << guess)) != 0 ? FLAG_GUESS_POSSIBLE : 0;
+      var node = new Node(guess, flags, solvable, oneAwayChild, twoAwayChild);
+      int index =
+          internedNodes.computeIfAbsent(
+              node,
+              n -> {
+                nodes.add(n);
+                return nodes.size() - 1;
+              });
+      nodeIndexes.put(key, index);
+      return index;
+    }
+  }
+
+  int nodeCount() {
+    return guesses.length;
+  }
+
+  /** Returns how many connections of the original universe this strategy finds. */
+  int solvable() {
+    return solvable[root];
+  }
+
+  /**
+   * Returns the guess to make after the given responses to the previous guesses of this strategy,
+   * or {@link #NO_GUESS} if there are no lives left. The responses must not include {@link
+   * Score#MATCH}, since that ends the game.
+   */
+  int nextGuess(Score... responses) {
+    int node = root;
+    for (Score response : responses) {
+      node = child(node, response);
+      if (node == NO_CHILD) {
+        return NO_GUESS;
+      }
+    }
+    return guesses[node];
+  }
+
+  @Override
+  public int root() {
+    return root;
+  }
+
+  @Override
+  public int guess(int node) {
+    return guesses[node];
+  }
+
+  @Override
+  public int child(int node, Score response) {
+    return switch (response) {
+      case MATCH -> throw new IllegalArgumentException("Game is already over");
+      case ONE_AWAY -> oneAwayChildren[node];
+      case TWO_AWAY -> twoAwayChildren[node];
+    };
+  }
+
+  /** Writes this strategy to the given file in the format described in the class documentation. */
+  void write(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + nodeCount() * NODE_BYTES);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(nodeCount()).putInt(root);
+    for (int i = 0; i < nodeCount(); i++) {
+      buffer
+          .put(guesses[i])
+          .put(flags[i])
+          .putShort(solvable[i])
+          .putInt(oneAwayChildren[i])
+          .putInt(twoAwayChildren[i]);
+    }
+    buffer.flip();
+    try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The symmetries of the problem. Relabeling the items B to H in any way produces an equivalent
+ * problem, so there are 7! = 5040 symmetries. Each one maps A-connections to A-connections, since A
+ * stays where it is. Here we represent a symmetry by its index into a precomputed table that says,
+ * for each of the 35 A-connections, which A-connection it maps to.
+ *
+ * <p>Universes are represented as in {@link PartitionTable}: bit <i>i</i> of a {@code long}
+ * mask is set if {@code Connection.ALL_A_CONNECTIONS.get(i)} is in the universe.
+ *
+ * <p>We use the symmetries in two ways. First, two universes that are images of each other under
+ * some symmetry have the same {@link ConnectionsGuessing#search} result, so we can record results
+ * under a {@linkplain #canonicalize canonical} representative. Second, if a symmetry maps the
+ * current universe to itself, then it maps every guess to an equivalent guess, and we only need to
+ * try one guess from each equivalence class. Finding every symmetry that maps a universe to itself
+ * is expensive, but we know that a symmetry that maps each of the guesses made so far to itself
+ * must also map the universe to itself, since the universe is determined by those guesses and
+ * their outcomes. So we track that {@linkplain #stabilizer stabilizer} as the search descends.
+ */
+final class Symmetry {
+  private Symmetry() {}
+
+  static final int A_CONNECTION_COUNT = 35;
+
+  /** {@code IMAGES[p][i]} is the index of the A-connection that symmetry {@code p} maps i to. */
+  private static final byte[][] IMAGES = computeImages();
+
+  static final int PERMUTATION_COUNT = IMAGES.length;
+
+  /** The indices of every symmetry, which is the group of all symmetries of the full problem. */
+  static final int[] ALL = allPermutations();
+
+  /** The group containing only the identity symmetry, which is index 0. */
+  static final int[] IDENTITY = {0};
+
+  /** Returns the image of the given A-connection index under symmetry {@code p}. */
+  static int image(int p, int aIndex) {
+    return IMAGES[p][aIndex];
+  }
+
+  /** Returns the image of the given universe under symmetry {@code p}. */
+  static long apply(int p, long universe) {
+    byte[] images = IMAGES[p];
+    long result = 0;
+    for (long rest = universe; rest != 0; rest &= rest - 1) {
+      result |= 1L << images[Long.numberOfTrailingZeros(rest)];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the canonical representative of the given universe, which is the numerically smallest
+   * of its images under all the symmetries. Two universes have the same canonical representative
+   * if and only if some symmetry maps one to the other.
+   */
+  static long canonicalize(long universe) {
+    long best = universe;
+    for (int p = 1; p < PERMUTATION_COUNT; p++) {
+      long image = apply(p, universe);
+      if (image < best) {
+        best = image;
+      }
+    }
+    return best;
+  }
+
+  /** Returns the symmetries in {@code group} that map {@code universe} to itself. */
+  static int[] automorphisms(int[] group, long universe) {
+    int[] result = new int[group.length];
+    int n = 0;
+    for (int p : group) {
+      if (apply(p, universe) == universe) {
+        result[n++] = p;
+      }
+    }
+    return Arrays.copyOf(result, n);
+  }
+
+  /** Returns the symmetries in {@code group} that map the guess {@code aIndex} to itself. */
+  static int[] stabilizer(int[] group, int aIndex) {
+    int[] result = new int[group.length];
+    int n = 0;
+    for (int p : group) {
+      if (IMAGES[p][aIndex] == aIndex) {
+        result[n++] = p;
+      }
+    }
+    return n == group.length ? group : Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Returns true if {@code aIndex} is the smallest index in its orbit under {@code group}. Trying
+   * only those guesses tries exactly one guess from each equivalence class.
+   */
+  static boolean isOrbitRepresentative(int[] group, int aIndex) {
+    for (int p : group) {
+      if (IMAGES[p][aIndex] < aIndex) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[][] computeImages() {
+    List<int[]> permutations = new ArrayList<>();
+    permute(new int[] {0, 1, 2, 3, 4, 5, 6, 7}, 1, permutations);
+    byte[][] images = new byte[permutations.size()][A_CONNECTION_COUNT];
+    List<Connection> aConnections = Connection.ALL_A_CONNECTIONS;
+    for (int p = 0; p < permutations.size(); p++) {
+      int[] permutation = permutations.get(p);
+      for (int i = 0; i < A_CONNECTION_COUNT; i++) {
+        int bits = aConnections.get(i).bits();
+        int imageBits = 0;
+        for (int item = 0; item < 8; item++) {
+          if ((bits & (1 << item)) != 0) {
+            imageBits |= 1 << permutation[item];
+          }
+        }
+        images[p][i] = (byte) new Connection(imageBits).aIndex();
+      }
+    }
+    return images;
+  }
+
+  /** Adds every permutation of {@code items[from..]} to {@code result}, identity first. */
+  private static void permute(int[] items, int from, List<int[]> result) {
+    if (from == items.length) {
+      result.add(items.clone());
+      return;
+    }
+    for (int i = from; i < items.length; i++) {
+      swap(items, from, i);
+      permute(items, from + 1, result);
+      swap(items, from, i);
+    }
+  }
+
+  private static void swap(int[] items, int i, int j) {
+    int t = items[i];
+    items[i] = items[j];
+    items[j] = t;
+  }
+
+  private static int[] allPermutations() {
+    int[] all = new int[PERMUTATION_COUNT];
+    Arrays.setAll(all, i -> i);
+    return all;
+  }
+}
@@ -0,0 +1,417 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The stage of the game before the one that {@link ConnectionsGuessing} considers: one connection
+ * has been found, and 12 items remain. The items are A to L, and a solution is a partition of them
+ * into 3 connections of 4 items each. There are 12! / (4!<sup>3</sup> 3!) = 5775 such partitions,
+ * and 12C4 = 495 possible guesses, with the same {@link Score} outcomes as before.
+ *
+ * <p>A universe is a bitmap over the partitions, in a {@code long[]} of {@value #WORDS} elements.
+ * For every guess and every score, the set of partitions that get that score is precomputed as a
+ * bitmap of the same shape, so splitting a universe is an AND of {@value #WORDS} words with each of
+ * the three masks for the guess, exactly as {@link PartitionTable} does for 35 connections in one
+ * word.
+ *
+ * <p>As in {@link FullGame}, lives are the number of wrong guesses still allowed, and a correct
+ * guess costs none. A correct guess leaves 8 items in 2 connections, which is the problem that
+ * {@link ConnectionsGuessing#search(long, int)} solves with the same number of lives. So the
+ * partitions that match a guess are mapped to a universe of A-connections over the other 8 items,
+ * using a precomputed table, and handed to an 8-item engine.
+ *
+ * <p>The search uses the symmetry argument from {@link FullGame}: only one guess from each class of
+ * guesses that are equivalent given the wrong guesses so far is tried. It also abandons a guess as
+ * soon as it can't beat the best so far, using an upper bound that depends only on the lives. A
+ * strategy is a tree whose nodes are guesses, and each node has at most 2 children, for the
+ * ONE_AWAY and TWO_AWAY outcomes, each with one fewer life. So with <i>L</i> lives there are at
+ * most 2<sup><i>d</i></sup> nodes at depth <i>d</i>, each of which can find at most {@link
+ * Bounds#maxSolvable} partitions of 35 with <i>L</i> - <i>d</i> lives by way of a correct guess.
+ */
+final class ThreeGroupGame {
+  static final int ITEMS = 12;
+  static final int GUESS_COUNT = 495;
+  static final int PARTITION_COUNT = 5775;
+  static final int WORDS = (PARTITION_COUNT + Long.SIZE - 1) / Long.SIZE;
+
+  private static final int ALL_ITEMS = (1 << ITEMS) - 1;
+  private static final int GROUP_MASK = 0xFFFF;
+  private static final Score[] SCORES = Score.values();
+
+  /** The 4-item masks, in increasing order. */
+  private static final char[] GUESSES = computeGuesses();
+
+  /** {@code GUESS_INDEXES[mask]} is the index of the guess with that mask, or -1. */
+  private static final short[] GUESS_INDEXES = computeGuessIndexes();
+
+  /**
+   * Every partition, packed with the 12-bit masks of its 3 connections at bits 0, 16, and 32, in
+   * order of their lowest item.
+   */
+  private static final long[] PARTITIONS = computePartitions();
+
+  /**
+   * {@code OUTCOMES[(guess * 3 + score.ordinal()) * WORDS + w]} is word {@code w} of the bitmap of
+   * partitions that get that score from that guess.
+   */
+  private static final long[] OUTCOMES = computeOutcomes();
+
+  /**
+   * {@code HANDOFF[guess][i]} is the index of the partition that contains {@code guess} and that
+   * leaves the A-connection with index <i>i</i> in the other 8 items, when those are relabeled A
+   * to H in order.
+   */
+  private static final int[][] HANDOFF = computeHandoff();
+
+  private final ConnectionsGuessing finalEight;
+  private final Map<State, Integer> results = new HashMap<>();
+
+  /**
+   * Constructs an instance that uses {@code finalEight} once a connection has been found. Results
+   * are cached in this instance, which is not thread-safe.
+   */
+  ThreeGroupGame(ConnectionsGuessing finalEight) {
+    this.finalEight = finalEight;
+  }
+
+  /** Returns an instance with an 8-item engine that has the sequential optimizations turned on. */
+  static ThreeGroupGame create() {
+    return new ThreeGroupGame(
+        ConnectionsGuessing.builder()
+            .transpositionTable(new TranspositionTable(1 << 16))
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .build());
+  }
+
+  /**
+   * Returns the mask of the given guess, where bit <i>i</i> is set if the guess contains the
+   * <i>i</i>th item.
+   */
+  static int guessMask(int guess) {
+    return GUESSES[guess];
+  }
+
+  /** Returns the guess with the given items, for example {@code "ABCD"}. */
+  static int guess(String items) {
+    int mask = 0;
+    for (char c : items.toCharArray()) {
+      checkArgument(c >= 'A' && c < 'A' + ITEMS, "Bad item %s", c);
+      mask |= 1 << (c - 'A');
+    }
+    checkArgument(Integer.bitCount(mask) == 4, "Bad guess %s", items);
+    return GUESS_INDEXES[mask];
+  }
+
+  /** Returns the 3 connection masks of the partition with the given index. */
+  static int[] connections(int partition) {
+    long packed = PARTITIONS[partition];
+    return new int[] {
+      (int) packed & GROUP_MASK, (int) (packed >>> 16) & GROUP_MASK, (int) (packed >>> 32)
+    };
+  }
+
+  /** Returns the score that {@code guess} gets if the solution is {@code partition}. */
+  static Score score(int partition, int guess) {
+    int max = 0;
+    for (int connection : connections(partition)) {
+      max = Math.max(max, Integer.bitCount(connection & GUESSES[guess]));
+    }
+    return switch (max) {
+      case 4 -> Score.MATCH;
+      case 3 -> Score.ONE_AWAY;
+      default -> Score.TWO_AWAY;
+    };
+  }
+
+  /** Returns a new universe containing every partition. */
+  static long[] all() {
+    long[] universe = new long[WORDS];
+    Arrays.fill(universe, -1L);
+    universe[WORDS - 1] = -1L >>> (WORDS * Long.SIZE - PARTITION_COUNT);
+    return universe;
+  }
+
+  static int size(long[] universe) {
+    int size = 0;
+    for (long word : universe) {
+      size += Long.bitCount(word);
+    }
+    return size;
+  }
+
+  static boolean contains(long[] universe, int partition) {
+    return (universe[partition >>> 6] & (1L << partition)) != 0;
+  }
+
+  /** Returns a new universe with the partitions of {@code universe} that give {@code score}. */
+  static long[] filter(long[] universe, int guess, Score score) {
+    long[] result = new long[WORDS];
+    int offset = (guess * SCORES.length + score.ordinal()) * WORDS;
+    for (int w = 0; w < WORDS; w++) {
+      result[w] = universe[w] & OUTCOMES[offset + w];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the universe of A-connections over the 8 items that remain once {@code guess} is
+   * found to be correct, given that the solution is in {@code universe}.
+   */
+  static long handoff(long[] universe, int guess) {
+    int[] partitions = HANDOFF[guess];
+    long mask = 0;
+    for (int i = 0; i < partitions.length; i++) {
+      if (contains(universe, partitions[i])) {
+        mask |= 1L << i;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Returns how many of the partitions in {@code universe} an optimal strategy can solve, when
+   * {@code lives} wrong guesses are allowed. The {@code history} is the guesses that narrowed
+   * {@link #all()} down to {@code universe}. The search relies on it for symmetry, so it must
+   * include every guess that was used to {@linkplain #filter filter} the universe.
+   */
+  int search(long[] universe, int lives, int... history) {
+    checkArgument(universe.length == WORDS, "Bad universe length %s", universe.length);
+    checkArgument(lives >= 0, "Bad lives %s", lives);
+    // The universe becomes part of a memo key, so the caller must not be able to change it.
+    return search(universe.clone(), size(universe), lives, history.clone());
+  }
+
+  /**
+   * Returns an upper bound on the result of a search with {@code lives} lives, as explained in the
+   * class documentation.
+   */
+  static int maxSolvable(int lives) {
+    int bound = 0;
+    for (int depth = 0; depth < lives; depth++) {
+      bound += (1 << depth) * Bounds.maxSolvable(PartitionTable.SIZE, lives - depth);
+    }
+    return bound;
+  }
+
+  /**
+   * Returns the result for {@code universe}, which has {@code size} partitions, given the wrong
+   * guesses in {@code history}.
+   */
+  private int search(long[] universe, int size, int lives, int[] history) {
+    if (lives == 0 || size == 0) {
+      return 0;
+    }
+    if (size == 1 || lives == 1) {
+      // Guess a connection of any possible partition, which might be correct.
+      return 1;
+    }
+    State state = new State(universe, lives);
+    Integer cached = results.get(state);
+    if (cached != null) {
+      return cached;
+    }
+    int bound = Math.min(size, maxSolvable(lives));
+    int childBound = maxSolvable(lives - 1);
+    int best = 0;
+    int[] childHistory = Arrays.copyOf(history, history.length + 1);
+    long[] oneAway = new long[WORDS];
+    long[] twoAway = new long[WORDS];
+    for (int guess : orbitRepresentatives(history)) {
+      if (best >= bound) {
+        break;
+      }
+      int matchOffset = guess * SCORES.length * WORDS;
+      int oneAwaySize = 0;
+      int twoAwaySize = 0;
+      for (int w = 0; w < WORDS; w++) {
+        oneAway[w] = universe[w] & OUTCOMES[matchOffset + WORDS + w];
+        twoAway[w] = universe[w] & OUTCOMES[matchOffset + 2 * WORDS + w];
+        oneAwaySize += Long.bitCount(oneAway[w]);
+        twoAwaySize += Long.bitCount(twoAway[w]);
+      }
+      if (oneAwaySize == size || twoAwaySize == size) {
+        continue; // Not informative.
+      }
+      int matchSize = size - oneAwaySize - twoAwaySize;
+      int oneAwayBound = Math.min(oneAwaySize, childBound);
+      int twoAwayBound = Math.min(twoAwaySize, childBound);
+      if (matchSize + oneAwayBound + twoAwayBound <= best) {
+        continue; // This guess can't beat the best so far.
+      }
+      int value = matchSize == 0 ? 0 : finalEight.search(handoff(universe, guess), lives);
+      if (value + oneAwayBound + twoAwayBound <= best) {
+        continue;
+      }
+      childHistory[history.length] = guess;
+      value += search(oneAway.clone(), oneAwaySize, lives - 1, childHistory);
+      if (value + twoAwayBound <= best) {
+        continue;
+      }
+      value += search(twoAway.clone(), twoAwaySize, lives - 1, childHistory);
+      best = Math.max(best, value);
+    }
+    results.put(state, best);
+    return best;
+  }
+
+  /**
+   * Returns one guess from each class of guesses that are equivalent given the previous guesses in
+   * {@code history}, as explained for {@link FullGame#orbitRepresentatives}.
+   */
+  static int[] orbitRepresentatives(int... history) {
+    checkArgument(history.length <= Integer.SIZE, "History too long");
+    int[] signatures = new int[ITEMS];
+    for (int i = 0; i < history.length; i++) {
+      int mask = GUESSES[history[i]];
+      for (int item = 0; item < ITEMS; item++) {
+        if ((mask & (1 << item)) != 0) {
+          signatures[item] |= 1 << i;
+        }
+      }
+    }
+    int[] classes = new int[ITEMS];
+    List<Integer> distinct = new ArrayList<>();
+    for (int item = 0; item < ITEMS; item++) {
+      int c = distinct.indexOf(signatures[item]);
+      if (c < 0) {
+        c = distinct.size();
+        distinct.add(signatures[item]);
+      }
+      classes[item] = c;
+    }
+    Set<Long> seen = new HashSet<>();
+    int[] representatives = new int[GUESS_COUNT];
+    int count = 0;
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      int mask = GUESSES[guess];
+      long key = 0;
+      for (int item = 0; item < ITEMS; item++) {
+        if ((mask & (1 << item)) != 0) {
+          key += 1L << (3 * classes[item]);
+        }
+      }
+      if (seen.add(key)) {
+        representatives[count++] = guess;
+      }
+    }
+    return Arrays.copyOf(representatives, count);
+  }
+
+  /** The key for cached search results. */
+  private record State(long[] universe, int lives) {
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof State that
+          && lives == that.lives
+          && Arrays.equals(universe, that.universe);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(universe) * 31 + lives;
+    }
+  }
+
+  /** Prints how many of the 5775 partitions can be solved with 1 to 6 wrong guesses allowed. */
+  public static void main(String[] args) {
+    var game = create();
+    for (int lives = 1; lives <= 6; lives++) {
+      long start = System.nanoTime();
+      int solvable = game.search(all(), lives);
+      System.out.printf(
+          "With %d lives, %d of %d partitions can be solved (%.1fs)%n",
+          lives, solvable, PARTITION_COUNT, (System.nanoTime() - start) / 1e9);
+    }
+  }
+
+  private static char[] computeGuesses() {
+    char[] guesses = new char[GUESS_COUNT];
+    int count = 0;
+    for (int mask = 0; mask <= ALL_ITEMS; mask++) {
+      if (Integer.bitCount(mask) == 4) {
+        guesses[count++] = (char) mask;
+      }
+    }
+    return guesses;
+  }
+
+  private static short[] computeGuessIndexes() {
+    short[] indexes = new short[ALL_ITEMS + 1];
+    Arrays.fill(indexes, (short) -1);
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      indexes[GUESSES[guess]] = (short) guess;
+    }
+    return indexes;
+  }
+
+  private static long[] computePartitions() {
+    long[] partitions = new long[PARTITION_COUNT];
+    int count = 0;
+    for (int c0 : connectionsWithLowest(ALL_ITEMS)) {
+      int rest = ALL_ITEMS & ~c0;
+      for (int c1 : connectionsWithLowest(rest)) {
+        partitions[count++] = c0 | ((long) c1 << 16) | ((long) (rest & ~c1) << 32);
+      }
+    }
+    if (count != PARTITION_COUNT) {
+      throw new AssertionError(count);
+    }
+    return partitions;
+  }
+
+  /** Returns the 4-item subsets of {@code items} that contain its lowest item. */
+  private static List<Integer> connectionsWithLowest(int items) {
+    int lowest = Integer.lowestOneBit(items);
+    List<Integer> result = new ArrayList<>();
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      int mask = GUESSES[guess];
+      if ((mask & lowest) != 0 && (mask & ~items) == 0) {
+        result.add(mask);
+      }
+    }
+    return result;
+  }
+
+  private static long[] computeOutcomes() {
+    long[] outcomes = new long[GUESS_COUNT * SCORES.length * WORDS];
+    for (int guess = 0; guess < GUESS_COUNT; guess++) {
+      for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+        int offset = (guess * SCORES.length + score(partition, guess).ordinal()) * WORDS;
+        outcomes[offset + (partition >>> 6)] |= 1L << partition;
+      }
+    }
+    return outcomes;
+  }
+
+  private static int[][] computeHandoff() {
+    int[][] handoff = new int[GUESS_COUNT][PartitionTable.SIZE];
+    for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+      int[] connections = connections(partition);
+      for (int connection : connections) {
+        int rest = ALL_ITEMS & ~connection;
+        // The other connection that contains the lowest remaining item is the A-connection.
+        int aConnection = 0;
+        for (int other : connections) {
+          if ((other & Integer.lowestOneBit(rest)) != 0) {
+            aConnection = other;
+          }
+        }
+        int bits = Integer.compress(aConnection, rest);
+        handoff[GUESS_INDEXES[connection]][new Connection(bits).aIndex()] = partition;
+      }
+    }
+    return handoff;
+  }
+}
@@ -0,0 +1,174 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A memo of results from {@link ConnectionsGuessing#search}, keyed on the universe of possible
+ * connections and the number of remaining lives. Many different sequences of guesses arrive at the
+ * same universe with the same number of lives, and the result is the same every time, so we only
+ * need to compute it once.
+ *
+ * <p>The universe is represented as a 35-bit mask where bit <i>i</i> is set if {@code
+ * Connection.ALL_A_CONNECTIONS.get(i)} is in the universe. Since a universe is never empty, the
+ * mask is never 0. Each slot of the table is a single {@code long} that packs the universe, the
+ * lives, and the result, so there are no boxed keys and an empty slot is just 0.
+ *
+ * <p>The table has a fixed capacity, chosen at construction. Once it is three-quarters full, new
+ * results are simply not recorded, so a table that is too small makes the search slower but not
+ * wrong. {@link EvictingCache} is an alternative that replaces old results instead.
+ *
+ * <p>The table is safe for concurrent use, so a {@linkplain ConnectionsGuessing#parallel parallel}
+ * search can share one table between all its threads. Since each slot is a single {@code long}, a
+ * reader sees either a complete entry or none, and a new entry is claimed with a compare-and-set.
+ * Two threads may occasionally both compute the same result, but they will both record the same
+ * value.
+ *
+ * <p>A table must not be shared between {@link ConnectionsGuessing} instances that have
+ * different values of {@link ConnectionsGuessing#onlyGuessUniverse()}, since the results would
+ * differ.
+ */
+final class TranspositionTable implements ResultCache {
+  static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private static final int UNIVERSE_BITS = 35;
+  private static final int LIVES_BITS = 12;
+  private static final int VALUE_BITS = 16;
+  private static final long UNIVERSE_MASK = (1L << UNIVERSE_BITS) - 1;
+  private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+  private static final int MAX_LIVES = (1 << LIVES_BITS) - 1;
+
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final long[] slots;
+  private final int indexMask;
+  private final int maxSize;
+  private final AtomicInteger size = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Constructs a table with room for at least {@code capacity} slots. The capacity is rounded up
+   * to a power of 2.
+   */
+  TranspositionTable(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "Bad capacity %s", capacity);
+    int slotCount = Integer.highestOneBit(capacity);
+    if (slotCount < capacity) {
+      slotCount <<= 1;
+    }
+    this.slots = new long[slotCount];
+    this.indexMask = slotCount - 1;
+    this.maxSize = slotCount - slotCount / 4;
+  }
+
+  @Override
+  public int get(long universe, int lives) {
+    long key = key(universe, lives);
+    for (int i = indexFor(key); ; i = (i + 1) & indexMask) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot == 0) {
+        misses.increment();
+        return ABSENT;
+      }
+      if ((slot >>> VALUE_BITS) == key) {
+        hits.increment();
+        return (int) (slot & VALUE_MASK);
+      }
+    }
+  }
+
+  /**
+   * Records that the result for {@code universe} with {@code lives} remaining is {@code value}. If
+   * the table is already full enough, the result is silently dropped.
+   */
+  @Override
+  public void put(long universe, int lives, int value) {
+    checkArgument(value >= 0 && value <= VALUE_MASK, "Value out of range: %s", value);
+    long key = key(universe, lives);
+    long entry = (key << VALUE_BITS) | value;
+    for (int i = indexFor(key); ; i = (i + 1) & indexMask) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot == 0) {
+        if (size.get() >= maxSize) {
+          return;
+        }
+        if (SLOTS.compareAndSet(slots, i, 0L, entry)) {
+          size.incrementAndGet();
+          return;
+        }
+        // Another thread claimed this slot first. Look at what it put there.
+        slot = (long) SLOTS.getAcquire(slots, i);
+      }
+      if ((slot >>> VALUE_BITS) == key) {
+        SLOTS.setRelease(slots, i, entry);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(slots, 0);
+    VarHandle.releaseFence();
+    size.set(0);
+    hits.reset();
+    misses.reset();
+  }
+
+  @Override
+  public int capacity() {
+    return slots.length;
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public long hits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long misses() {
+    return misses.sum();
+  }
+
+  @Override
+  public void forEach(EntryVisitor visitor) {
+    for (int i = 0; i < slots.length; i++) {
+      long slot = (long) SLOTS.getAcquire(slots, i);
+      if (slot != 0) {
+        long key = slot >>> VALUE_BITS;
+        visitor.visit(
+            key & UNIVERSE_MASK, (int) (key >>> UNIVERSE_BITS), (int) (slot & VALUE_MASK));
+      }
+    }
+  }
+
+  private int indexFor(long key) {
+    // Fibonacci hashing: the high bits of the product are well mixed.
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & indexMask;
+  }
+
+  private static long key(long universe, int lives) {
+    checkArgument(
+        universe != 0 && (universe & ~UNIVERSE_MASK) == 0, "Bad universe %s", universe);
+    checkArgument(lives > 0 && lives <= MAX_LIVES, "Lives out of range: %s", lives);
+    return ((long) lives << UNIVERSE_BITS) | universe;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TranspositionTable{size=%d, capacity=%d, hits=%d, misses=%d}",
+        size(), slots.length, hits(), misses());
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.GuessAdvisor.Advice;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class AdviceServerTest {
+  @Test
+  public void requests() throws Exception {
+    try (var server = AdviceServer.start(GuessAdvisor.create(), 0);
+        var socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        var in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+      out.println("UNIVERSE " + PartitionTable.ALL + " 4");
+      assertThat(in.readLine()).isEqualTo("OK ABCD 15");
+      out.println("HISTORY 4");
+      assertThat(in.readLine()).isEqualTo("OK ABCD 15");
+      long oneAway = PartitionTable.ALL & PartitionTable.oneAwayMask(0);
+      out.println("UNIVERSE " + oneAway + " 4");
+      String expected = in.readLine();
+      assertThat(expected).startsWith("OK ");
+      out.println("HISTORY 5 ABCD:ONE_AWAY");
+      assertThat(in.readLine()).isEqualTo(expected);
+      out.println("HISTORY 4 ABCD:MATCH");
+      assertThat(in.readLine()).isEqualTo("ERROR Game is over");
+      out.println("UNIVERSE 0 4");
+      assertThat(in.readLine()).isEqualTo("ERROR Bad universe 0");
+      out.println("FROBNICATE");
+      assertThat(in.readLine()).isEqualTo("ERROR Unknown request FROBNICATE");
+    }
+  }
+
+  @Test
+  public void concurrentRequestsComputedOnce() throws Exception {
+    var advisor = GuessAdvisor.create();
+    int threads = 32;
+    var start = new CountDownLatch(1);
+    List<Future<Advice>> futures = new ArrayList<>();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < threads; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return advisor.advise(PartitionTable.ALL, 5);
+                }));
+      }
+      start.countDown();
+    }
+    for (var future : futures) {
+      assertThat(future.get()).isEqualTo(futures.get(0).get());
+    }
+    assertThat(futures.get(0).get().solvable()).isEqualTo(28);
+    assertThat(advisor.computations()).isEqualTo(1);
+  }
+
+  @Test
+  public void loadGenerator() throws Exception {
+    try (var server = AdviceServer.start(GuessAdvisor.create(), 0)) {
+      var report = LoadGenerator.run(server.port(), 8, 20, 1);
+      assertThat(report.requests()).isEqualTo(160);
+      assertThat(report.p50Nanos()).isAtMost(report.p99Nanos());
+      assertThat(report.requestsPerSecond()).isGreaterThan(0.0);
+    }
+  }
+}
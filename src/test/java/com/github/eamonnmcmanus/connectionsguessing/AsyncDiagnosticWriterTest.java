@@ -0,0 +1,45 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.DiagnosticSink.NonUniverseBetter;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class AsyncDiagnosticWriterTest {
+  private static int index(String connection) {
+    return Connection.fromString(connection).aIndex();
+  }
+
+  @Test
+  public void writesInOrder() {
+    long universe = 0;
+    var results = ImmutableMap.<Integer, Integer>builder();
+    for (String connection : List.of("ABCE", "ABDF", "ACDG", "AEFG")) {
+      universe |= 1L << index(connection);
+      results.put(index(connection), 3);
+    }
+    var event = new NonUniverseBetter(universe, 3, index("ABCH"), 4, results.buildOrThrow());
+    var bytes = new ByteArrayOutputStream();
+    var out = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+    try (var writer = new AsyncDiagnosticWriter(out)) {
+      writer.nonUniverseBetter(event);
+      writer.nonUniverseBetter(event);
+      writer.flush();
+      String once = AsyncDiagnosticWriter.format(event);
+      assertThat(bytes.toString(StandardCharsets.UTF_8)).isEqualTo(once + once);
+    }
+    assertThat(AsyncDiagnosticWriter.format(event))
+        .startsWith("Universe [ABCE, ABDF, ACDG, AEFG] lives 3 bestNotInUniverse 4 for ABCH -> ");
+    assertThat(AsyncDiagnosticWriter.format(event))
+        .endsWith("  AEFG -> 3; split is AEFG | [] | [ABCE, ABDF, ACDG]\n");
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class BottomUpSolverTest {
+  @Test
+  public void sameAsSearch() {
+    var solver = BottomUpSolver.solve(PartitionTable.ALL, 8, false);
+    assertThat(solver.universeCount()).isEqualTo(15_611);
+    var guessing = ConnectionsGuessing.builder().exploitSymmetry(true).branchAndBound(true).build();
+    for (int lives = 1; lives <= 8; lives++) {
+      assertThat(solver.best(PartitionTable.ALL, lives))
+          .isEqualTo(guessing.search(PartitionTable.ALL, lives));
+    }
+    assertThat(solver.best(PartitionTable.ALL, 4)).isEqualTo(15);
+    assertThat(solver.best(PartitionTable.ALL, 6)).isEqualTo(35);
+  }
+
+  @Test
+  public void subUniversesSameAsSearch() {
+    var solver = BottomUpSolver.solve(PartitionTable.ALL, 5, false);
+    var guessing = ConnectionsGuessing.builder().build();
+    Random random = new Random(1234);
+    // A universe reached by a few random guesses.
+    for (int i = 0; i < 100; i++) {
+      long universe = PartitionTable.ALL;
+      for (int j = random.nextInt(4); j > 0; j--) {
+        long child =
+            universe
+                & (random.nextBoolean()
+                    ? PartitionTable.oneAwayMask(random.nextInt(PartitionTable.SIZE))
+                    : PartitionTable.twoAwayMask(random.nextInt(PartitionTable.SIZE)));
+        if (child != 0) {
+          universe = child;
+        }
+      }
+      for (int lives = 1; lives <= 5; lives++) {
+        assertThat(solver.best(universe, lives)).isEqualTo(guessing.search(universe, lives));
+      }
+    }
+  }
+
+  @Test
+  public void onlyGuessUniverse() {
+    var solver = BottomUpSolver.solve(PartitionTable.ALL, 6, true);
+    assertThat(solver.best(PartitionTable.ALL, 4)).isEqualTo(15);
+    assertThat(solver.best(PartitionTable.ALL, 5)).isEqualTo(26);
+    assertThat(solver.best(PartitionTable.ALL, 6)).isEqualTo(33);
+  }
+
+  @Test
+  public void unreachable() {
+    var solver = BottomUpSolver.solve(PartitionTable.matchMask(0), 3, false);
+    assertThat(solver.universeCount()).isEqualTo(1);
+    assertThrows(IllegalArgumentException.class, () -> solver.best(PartitionTable.ALL, 2));
+    assertThrows(IllegalArgumentException.class, () -> solver.best(PartitionTable.matchMask(0), 4));
+  }
+}
@@ -0,0 +1,44 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class BoundsTest {
+  @Test
+  public void idealStrategyFromReadme() {
+    assertThat(Bounds.maxSolvable(35, 1)).isEqualTo(1);
+    assertThat(Bounds.maxSolvable(35, 2)).isEqualTo(3);
+    assertThat(Bounds.maxSolvable(35, 3)).isEqualTo(7);
+    assertThat(Bounds.maxSolvable(35, 4)).isEqualTo(15);
+    assertThat(Bounds.maxSolvable(35, 5)).isEqualTo(31);
+    assertThat(Bounds.maxSolvable(35, 6)).isEqualTo(35);
+    assertThat(Bounds.maxSolvable(35, 100)).isEqualTo(35);
+  }
+
+  @Test
+  public void smallUniverses() {
+    assertThat(Bounds.maxSolvable(0, 3)).isEqualTo(0);
+    assertThat(Bounds.maxSolvable(1, 1)).isEqualTo(1);
+    assertThat(Bounds.maxSolvable(2, 1)).isEqualTo(1);
+    assertThat(Bounds.maxSolvable(2, 2)).isEqualTo(2);
+    // Guess a connection that isn't possible, splitting 4 into 2 and 2, then guess one of each.
+    assertThat(Bounds.maxSolvable(4, 3)).isEqualTo(4);
+  }
+
+  @Test
+  public void minTotalGuesses() {
+    assertThat(Bounds.minTotalGuesses(0, 3)).isEqualTo(0);
+    assertThat(Bounds.minTotalGuesses(5, 0)).isEqualTo(5);
+    assertThat(Bounds.minTotalGuesses(1, 1)).isEqualTo(1);
+    // Guess one of the two, then the other costs a second guess and is not found: 1 + 2.
+    assertThat(Bounds.minTotalGuesses(2, 1)).isEqualTo(3);
+    // Find one with each of the first guess and the two second guesses: 1 + 2 + 2.
+    assertThat(Bounds.minTotalGuesses(3, 2)).isEqualTo(5);
+    // 1 + 2 * 2 + 4 * 3 + 8 * 4 = 49, and the other 20 are not found, at 5 each.
+    assertThat(Bounds.minTotalGuesses(35, 4)).isEqualTo(149);
+  }
+}
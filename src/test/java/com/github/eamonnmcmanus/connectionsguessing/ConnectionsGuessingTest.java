@@ -6,7 +6,12 @@ import static com.google.common.truth.Truth.assertWithMessage;
 
 import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
 import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Objective;
 import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.github.eamonnmcmanus.connectionsguessing.DiagnosticSink.NonUniverseBetter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 
 /**
@@ -76,6 +81,187 @@ public class ConnectionsGuessingTest {
             Score.TWO_AWAY, ConnectionSet.of(ADEF, ABEG, ACEG, ADFG, ABEH, ACEH, ADFH, ABGH, ACGH));
   }
 
+  @Test
+  public void searchAbcd() {
+    var guessing = ConnectionsGuessing.builder().build();
+    assertThat(guessing.searchAbcd(4)).isEqualTo(15);
+    assertThat(guessing.searchAbcd(5)).isEqualTo(28);
+    assertThat(guessing.searchAbcd(6)).isEqualTo(35);
+    assertThat(guessing.transpositionTable().hits()).isGreaterThan(0);
+  }
+
+  @Test
+  public void searchAbcdOnlyGuessUniverse() {
+    var guessing = ConnectionsGuessing.builder().onlyGuessUniverse(true).build();
+    assertThat(guessing.searchAbcd(4)).isEqualTo(15);
+    assertThat(guessing.searchAbcd(5)).isEqualTo(26);
+    assertThat(guessing.searchAbcd(6)).isEqualTo(33);
+  }
+
+  @Test
+  public void parallelSearchSameAsSequential() {
+    for (boolean exploitSymmetry : new boolean[] {false, true}) {
+      for (int cutoff : new int[] {1, 3}) {
+        var sequential = ConnectionsGuessing.builder().exploitSymmetry(exploitSymmetry).build();
+        var parallel =
+            ConnectionsGuessing.builder()
+                .exploitSymmetry(exploitSymmetry)
+                .parallel(true)
+                .parallelDepthCutoff(cutoff)
+                .build();
+        for (int lives = 2; lives <= 7; lives++) {
+          assertWithMessage("lives %s symmetry %s cutoff %s", lives, exploitSymmetry, cutoff)
+              .that(parallel.searchAbcd(lives))
+              .isEqualTo(sequential.searchAbcd(lives));
+        }
+        var scores = ALL_A_CONNECTIONS.scoresFor(ABCD);
+        assertThat(parallel.search(scores.get(Score.TWO_AWAY), 4))
+            .isEqualTo(sequential.search(scores.get(Score.TWO_AWAY), 4));
+      }
+    }
+  }
+
+  @Test
+  public void branchAndBoundSameAsExhaustive() {
+    for (boolean onlyGuessUniverse : new boolean[] {false, true}) {
+      for (boolean exploitSymmetry : new boolean[] {false, true}) {
+        var exhaustive =
+            ConnectionsGuessing.builder()
+                .onlyGuessUniverse(onlyGuessUniverse)
+                .exploitSymmetry(exploitSymmetry)
+                .build();
+        var pruned =
+            ConnectionsGuessing.builder()
+                .onlyGuessUniverse(onlyGuessUniverse)
+                .exploitSymmetry(exploitSymmetry)
+                .branchAndBound(true)
+                .build();
+        for (int lives = 2; lives <= 8; lives++) {
+          assertWithMessage("lives %s", lives)
+              .that(pruned.searchAbcd(lives))
+              .isEqualTo(exhaustive.searchAbcd(lives));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void dedupeGuessesSameAsExhaustive() {
+    var exhaustive = ConnectionsGuessing.builder().build();
+    var metrics = SearchMetrics.create();
+    var deduped = ConnectionsGuessing.builder().dedupeGuesses(true).metrics(metrics).build();
+    for (int lives = 2; lives <= 6; lives++) {
+      assertThat(deduped.searchAbcd(lives)).isEqualTo(exhaustive.searchAbcd(lives));
+    }
+    // In the universes that searchAbcd starts with, several guesses split the same way.
+    long removed = metrics.exactDuplicatesAtDepth(1) + metrics.mirroredDuplicatesAtDepth(1);
+    assertThat(removed).isGreaterThan(0);
+    assertThat(metrics.dedupeCandidatesAtDepth(1)).isGreaterThan(removed);
+    assertThat(metrics.summary(deduped.transpositionTable())).contains("duplicate splits");
+  }
+
+  @Test
+  public void fewestGuessesSameAsExhaustive() {
+    var exhaustive = ConnectionsGuessing.builder().objective(Objective.FEWEST_GUESSES).build();
+    var optimized =
+        ConnectionsGuessing.builder()
+            .objective(Objective.FEWEST_GUESSES)
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .build();
+    for (int lives = 1; lives <= 6; lives++) {
+      int total = exhaustive.search(PartitionTable.ALL, lives);
+      assertThat(optimized.search(PartitionTable.ALL, lives)).isEqualTo(total);
+      if (lives > 1) {
+        assertThat(optimized.searchAbcd(lives)).isEqualTo(total);
+      }
+      assertThat(total).isAtLeast(Bounds.minTotalGuesses(35, lives));
+    }
+  }
+
+  @Test
+  public void guessHistogram() {
+    var guessing =
+        ConnectionsGuessing.builder()
+            .objective(Objective.FEWEST_GUESSES)
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .build();
+    var mostFound = ConnectionsGuessing.builder().build();
+    for (int lives = 1; lives <= 6; lives++) {
+      int[] histogram = guessing.guessHistogram(PartitionTable.ALL, lives);
+      int found = 0;
+      int total = histogram[0] * (lives + 1);
+      for (int k = 1; k <= lives; k++) {
+        found += histogram[k];
+        total += k * histogram[k];
+      }
+      assertThat(found + histogram[0]).isEqualTo(35);
+      assertThat(total).isEqualTo(guessing.search(PartitionTable.ALL, lives));
+      assertThat(guessing.expectedGuesses(PartitionTable.ALL, lives))
+          .isWithin(1e-9)
+          .of(total / 35.0);
+      // Fewer guesses on average can't come from finding fewer connections.
+      assertThat(found).isAtMost(mostFound.search(PartitionTable.ALL, lives));
+    }
+    assertThat(guessing.guessHistogram(PartitionTable.ALL, 6)[0]).isEqualTo(0);
+  }
+
+  @Test
+  public void metrics() {
+    var metrics = SearchMetrics.create();
+    var guessing = ConnectionsGuessing.builder().metrics(metrics).build();
+    assertThat(guessing.searchAbcd(5)).isEqualTo(28);
+    assertThat(metrics.searchCalls()).isGreaterThan(0);
+    assertThat(metrics.bestForGuessCalls()).isGreaterThan(0);
+    assertThat(metrics.diagnosticBestForGuessCalls()).isEqualTo(0);
+    // searchAbcd searches the ONE_AWAY and TWO_AWAY sets for ABCD at depth 1.
+    assertThat(metrics.nodesAtDepth(0)).isEqualTo(0);
+    assertThat(metrics.nodesAtDepth(1)).isEqualTo(2);
+    assertThat(metrics.searchesWithUniverseSize(16)).isEqualTo(1);
+    assertThat(metrics.searchesWithUniverseSize(18)).isEqualTo(1);
+    assertThat(metrics.nanosAtLives(4)).isGreaterThan(0);
+    assertThat(guessing.metricsSummary()).contains("hit rate");
+
+    metrics.reset();
+    assertThat(metrics.searchCalls()).isEqualTo(0);
+    assertThat(SearchMetrics.disabled().enabled()).isFalse();
+  }
+
+  @Test
+  public void nonUniverseBetterDiagnostics() {
+    List<NonUniverseBetter> events = Collections.synchronizedList(new ArrayList<>());
+    var metrics = SearchMetrics.create();
+    var guessing =
+        ConnectionsGuessing.builder()
+            .showNonUniverseBetter(true)
+            .exploitSymmetry(true)
+            .dedupeGuesses(true)
+            .metrics(metrics)
+            .diagnostics(events::add)
+            .build();
+    assertThat(guessing.searchAbcd(5)).isEqualTo(28);
+    assertThat(events).isNotEmpty();
+    // Only guesses that symmetry or deduplication would have skipped are extra work.
+    assertThat(metrics.diagnosticBestForGuessCalls()).isLessThan(metrics.bestForGuessCalls());
+    var plain = ConnectionsGuessing.builder().build();
+    for (NonUniverseBetter event : events) {
+      assertThat(event.universe() & (1L << event.bestGuess())).isEqualTo(0);
+      assertThat(Long.bitCount(event.universe())).isEqualTo(event.inUniverseResults().size());
+      assertThat(event.bestResult())
+          .isEqualTo(plain.bestForGuess(event.universe(), event.bestGuess(), event.lives()));
+      event
+          .inUniverseResults()
+          .forEach(
+              (guess, result) -> {
+                assertThat(result).isLessThan(event.bestResult());
+                assertThat(result)
+                    .isEqualTo(plain.bestForGuess(event.universe(), guess, event.lives()));
+              });
+    }
+  }
+
   private static final Connection ABCD = Connection.fromString("ABCD");
   private static final Connection ABCE = Connection.fromString("ABCE");
   private static final Connection ABDE = Connection.fromString("ABDE");
@@ -0,0 +1,102 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class EvictingCacheTest {
+  @Test
+  public void getAndPut() {
+    var cache = EvictingCache.withMaxEntries(64);
+    assertThat(cache.get(0b101, 3)).isEqualTo(ResultCache.ABSENT);
+    cache.put(0b101, 3, 2);
+    assertThat(cache.get(0b101, 3)).isEqualTo(2);
+    assertThat(cache.get(0b101, 4)).isEqualTo(ResultCache.ABSENT);
+    cache.put(0b101, 3, 1);
+    assertThat(cache.get(0b101, 3)).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.hits()).isEqualTo(2);
+    assertThat(cache.misses()).isEqualTo(2);
+    assertThat(cache.evictions()).isEqualTo(0);
+    assertThrows(IllegalArgumentException.class, () -> cache.get(0, 3));
+  }
+
+  @Test
+  public void sizeLimit() {
+    assertThat(EvictingCache.withMaxBytes(1000).capacity()).isEqualTo(64);
+    assertThat(EvictingCache.withMaxBytes(1000).bytes()).isAtMost(1000);
+    assertThat(EvictingCache.withMaxEntries(1).capacity()).isEqualTo(EvictingCache.WAYS);
+  }
+
+  @Test
+  public void evictsCheapestEntries() {
+    // With only one bucket, every entry competes with every other.
+    var cache = EvictingCache.withMaxEntries(EvictingCache.WAYS);
+    long big = PartitionTable.ALL;
+    cache.put(big, 6, 35);
+    // These all have the same priority, so each new one replaces an older one.
+    for (int i = 0; i < PartitionTable.SIZE; i++) {
+      cache.put(1L << i, 2, 1);
+      // Reading the expensive entry keeps it from ageing.
+      assertThat(cache.get(big, 6)).isEqualTo(35);
+    }
+    assertThat(cache.size()).isEqualTo(EvictingCache.WAYS);
+    assertThat(cache.evictions()).isEqualTo(PartitionTable.SIZE + 1 - EvictingCache.WAYS);
+    assertThat(cache.rejections()).isEqualTo(0);
+    assertThat(cache.get(1L << (PartitionTable.SIZE - 1), 2)).isEqualTo(1);
+    assertThat(cache.get(1L, 2)).isEqualTo(ResultCache.ABSENT);
+    // The expensive entry survived all those cheap ones.
+    assertThat(cache.get(big, 6)).isEqualTo(35);
+  }
+
+  @Test
+  public void cheapEntriesAreDroppedUntilExpensiveOnesAge() {
+    var cache = EvictingCache.withMaxEntries(EvictingCache.WAYS);
+    for (int i = 0; i < EvictingCache.WAYS; i++) {
+      cache.put(PartitionTable.ALL & ~(1L << i), 6, i);
+    }
+    // The first cheap entry is dropped, and the bucket ages.
+    cache.put(1, 2, 1);
+    assertThat(cache.rejections()).isEqualTo(1);
+    assertThat(cache.evictions()).isEqualTo(0);
+    assertThat(cache.get(1, 2)).isEqualTo(ResultCache.ABSENT);
+    assertThat(cache.get(PartitionTable.ALL & ~1L, 6)).isEqualTo(0);
+
+    // The other expensive entries are never read, so eventually they age out. The one that is
+    // read each time survives.
+    for (long universe = 2; universe <= 1000; universe++) {
+      cache.put(universe, 2, 1);
+      assertThat(cache.get(PartitionTable.ALL & ~1L, 6)).isEqualTo(0);
+    }
+    assertThat(cache.rejections()).isGreaterThan(1);
+    assertThat(cache.evictions()).isGreaterThan(0);
+    assertThat(cache.get(1000, 2)).isEqualTo(1);
+    int survivors = 0;
+    for (int i = 1; i < EvictingCache.WAYS; i++) {
+      if (cache.get(PartitionTable.ALL & ~(1L << i), 6) != ResultCache.ABSENT) {
+        survivors++;
+      }
+    }
+    // Entries of priority 0 are evicted in slot order, so one may still be waiting its turn.
+    assertThat(survivors).isAtMost(1);
+  }
+
+  @Test
+  public void searchWithTinyCache() {
+    var cache = EvictingCache.withMaxEntries(64);
+    var guessing = ConnectionsGuessing.builder().transpositionTable(cache).build();
+    assertThat(guessing.searchAbcd(4)).isEqualTo(15);
+    assertThat(guessing.searchAbcd(5)).isEqualTo(28);
+    assertThat(cache.size()).isAtMost(64);
+    assertThat(cache.evictions()).isGreaterThan(0);
+    assertThat(cache.hits()).isGreaterThan(0);
+    assertThat(guessing.metricsSummary()).isEqualTo("Metrics are disabled\n");
+    var metrics = SearchMetrics.create();
+    assertThat(metrics.summary(cache)).contains("evictions");
+    assertThat(metrics.summary(cache)).contains("rejected inserts");
+  }
+}
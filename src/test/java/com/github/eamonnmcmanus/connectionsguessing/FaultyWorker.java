@@ -0,0 +1,54 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link SearchWorker} that misbehaves on purpose, for {@link ShardedSearchTest}. With {@code
+ * --fail-after N}, it exits abruptly on receiving request N + 1, and with {@code --hang-after N},
+ * it stops responding instead. Any other arguments are passed to {@link SearchWorker#run}.
+ *
+ * @author emcmanus
+ */
+public final class FaultyWorker {
+  private FaultyWorker() {}
+
+  public static void main(String[] args) throws IOException {
+    String fault = "";
+    int after = -1;
+    List<String> workerArgs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--fail-after", "--hang-after" -> {
+          fault = args[i];
+          after = Integer.parseInt(args[++i]);
+        }
+        default -> workerArgs.add(args[i]);
+      }
+    }
+    boolean hang = fault.equals("--hang-after");
+    int faultyRequest = after;
+    SearchWorker.run(
+        workerArgs.toArray(new String[0]),
+        request -> {
+          if (request == faultyRequest) {
+            if (hang) {
+              hang();
+            } else {
+              Runtime.getRuntime().halt(1);
+            }
+          }
+        });
+  }
+
+  private static void hang() {
+    while (true) {
+      try {
+        Thread.sleep(Long.MAX_VALUE);
+      } catch (InterruptedException e) {
+        // Keep hanging.
+      }
+    }
+  }
+}
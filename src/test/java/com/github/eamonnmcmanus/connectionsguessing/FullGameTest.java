@@ -0,0 +1,80 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.github.eamonnmcmanus.connectionsguessing.FullGame.Split;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class FullGameTest {
+  @Test
+  public void counts() {
+    long[] all = FullGame.all();
+    assertThat(FullGame.size(all)).isEqualTo(FullGame.PARTITION_COUNT);
+    assertThat(FullGame.guessMask(0)).isEqualTo(0b1111);
+    assertThat(FullGame.guessMask(FullGame.GUESS_COUNT - 1)).isEqualTo(0xF000);
+    assertThat(FullGame.guess("ABCD")).isEqualTo(0);
+  }
+
+  @Test
+  public void firstGuess() {
+    long[] all = FullGame.all();
+    // ABCD matches if the other 12 items are in 3 connections, which they can be in 5775 ways. It
+    // is one away if 3 of ABCD are with one of the 12 other items, and then the remaining 12
+    // items are again in 3 connections.
+    Split split = FullGame.split(all, FullGame.guess("ABCD"));
+    assertThat(split.match()).isEqualTo(5775);
+    assertThat(split.oneAway()).isEqualTo(4 * 12 * 5775);
+    assertThat(split.twoAway()).isEqualTo(FullGame.PARTITION_COUNT - 5775 - 4 * 12 * 5775);
+    for (Score score : Score.values()) {
+      long[] filtered = FullGame.filter(all, 0, score);
+      int expected =
+          switch (score) {
+            case MATCH -> split.match();
+            case ONE_AWAY -> split.oneAway();
+            case TWO_AWAY -> split.twoAway();
+          };
+      assertThat(FullGame.size(filtered)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void orbitRepresentatives() {
+    assertThat(FullGame.orbitRepresentatives(0)).asList().containsExactly(0);
+    // After ABCD, a guess is characterized by how many of ABCD it contains.
+    int abcd = FullGame.guess("ABCD");
+    assertThat(FullGame.orbitRepresentatives(0, abcd)).hasLength(5);
+    assertThat(FullGame.orbitRepresentatives(FullGame.guessMask(abcd), abcd)).hasLength(1);
+    // After ABCD and ABEF, the classes are AB, CD, EF, and the other 10 items.
+    int abef = FullGame.guess("ABEF");
+    assertThat(FullGame.orbitRepresentatives(0, abcd, abef)).hasLength(23);
+  }
+
+  @Test
+  public void analyze() {
+    long[] all = FullGame.all();
+    int abcd = FullGame.guess("ABCD");
+    long[] oneAway = FullGame.filter(all, abcd, Score.ONE_AWAY);
+    List<Split> splits = FullGame.analyze(oneAway, 0, abcd);
+    assertThat(splits).hasSize(4); // ABCD itself is not informative.
+    for (int i = 1; i < splits.size(); i++) {
+      assertThat(splits.get(i).worstCase()).isAtLeast(splits.get(i - 1).worstCase());
+    }
+  }
+
+  /** Once 8 items are found, the full game is the game that {@link ConnectionsGuessing} solves. */
+  @Test
+  public void finalEight() {
+    long[] universe = FullGame.filter(FullGame.all(), FullGame.guess("ABCD"), Score.MATCH);
+    universe = FullGame.filter(universe, FullGame.guess("EFGH"), Score.MATCH);
+    assertThat(FullGame.size(universe)).isEqualTo(35);
+    var game = new FullGame();
+    int found = 0xFF;
+    assertThat(game.search(universe, found, 4)).isEqualTo(15);
+    assertThat(game.search(universe, found, 5)).isEqualTo(28);
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class GuessingSessionTest {
+  private static final GuessAdvisor ADVISOR = GuessAdvisor.create();
+
+  @Test
+  public void initialAdvice() {
+    var session = new GuessingSession(ADVISOR, 4);
+    assertThat(session.advice().solvable()).isEqualTo(15);
+    assertThat(session.nextGuess()).isEqualTo(Connection.fromString("ABCD"));
+    assertThat(session.possibleConnections()).hasSize(35);
+  }
+
+  @Test
+  public void playEverySolution() {
+    for (int lives = 4; lives <= 6; lives++) {
+      int found = 0;
+      for (Connection solution : Connection.ALL_A_CONNECTIONS) {
+        var session = new GuessingSession(ADVISOR, lives);
+        int guaranteed = session.advice().solvable();
+        while (!session.isOver()) {
+          var advice = session.advice();
+          // The guarantee for the remaining connections never gets worse than what was promised.
+          assertThat(advice.solvable()).isAtMost(guaranteed);
+          Connection guess = PartitionTable.connection(advice.guess());
+          session.record(guess, solution.scoreFor(guess));
+          assertThat(session.possibleConnections()).contains(solution);
+        }
+        if (session.isSolved()) {
+          found++;
+        }
+      }
+      assertThat(found).isEqualTo(ADVISOR.guessing().searchAbcd(lives));
+    }
+  }
+
+  @Test
+  public void impossibleResponse() {
+    var session = new GuessingSession(ADVISOR, 4);
+    Connection abcd = Connection.fromString("ABCD");
+    session.record(abcd, Score.ONE_AWAY);
+    assertThrows(IllegalArgumentException.class, () -> session.record(abcd, Score.MATCH));
+  }
+
+  @Test
+  public void gameOver() {
+    var session = new GuessingSession(ADVISOR, 1);
+    Connection abcd = Connection.fromString("ABCD");
+    session.record(abcd, Score.TWO_AWAY);
+    assertThat(session.isOver()).isTrue();
+    assertThat(session.isSolved()).isFalse();
+    assertThrows(IllegalStateException.class, session::advice);
+  }
+}
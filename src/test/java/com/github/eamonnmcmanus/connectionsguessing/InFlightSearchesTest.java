@@ -0,0 +1,191 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class InFlightSearchesTest {
+  @Test
+  public void concurrentSearchesShareOneComputation() throws Exception {
+    var inFlight = new InFlightSearches();
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var computations = new AtomicInteger();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<Integer> first =
+          executor.submit(
+              () ->
+                  inFlight.search(
+                      0b1011,
+                      4,
+                      () -> {
+                        computations.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return 3;
+                      }));
+      started.await();
+      Future<Integer> second =
+          executor.submit(
+              () -> inFlight.search(0b1011, 4, () -> computations.incrementAndGet() + 100));
+      while (inFlight.shared() == 0) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      assertThat(first.get()).isEqualTo(3);
+      assertThat(second.get()).isEqualTo(3);
+    }
+    assertThat(computations.get()).isEqualTo(1);
+    assertThat(inFlight.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void smallSubproblemsAreNotClaimed() {
+    var inFlight = new InFlightSearches(3);
+    int result = inFlight.search(0b1011, 2, () -> inFlight.size() + 5);
+    assertThat(result).isEqualTo(5);
+  }
+
+  @Test
+  public void failureIsNotRemembered() {
+    var inFlight = new InFlightSearches();
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            inFlight.search(
+                0b1011,
+                4,
+                () -> {
+                  throw new IllegalStateException();
+                }));
+    assertThat(inFlight.size()).isEqualTo(0);
+    assertThat(inFlight.search(0b1011, 4, () -> 2)).isEqualTo(2);
+  }
+
+  /**
+   * Asks for advice about every universe that can follow the first guess, all at once. The
+   * searches below them overlap a lot, but no subproblem big enough to be claimed is searched more
+   * than once.
+   */
+  @Test
+  public void adviceRequestsShareSubproblems() throws Exception {
+    var table = new CountingTable(new TranspositionTable(1 << 20));
+    var inFlight = new InFlightSearches();
+    var guessing =
+        ConnectionsGuessing.builder()
+            .transpositionTable(table)
+            .exploitSymmetry(true)
+            .branchAndBound(true)
+            .dedupeGuesses(true)
+            .inFlightSearches(inFlight)
+            .build();
+    var advisor = new GuessAdvisor(guessing);
+    long all = PartitionTable.ALL;
+    long[] universes = new long[2 * PartitionTable.SIZE];
+    for (int guess = 0; guess < PartitionTable.SIZE; guess++) {
+      universes[2 * guess] = all & PartitionTable.oneAwayMask(guess);
+      universes[2 * guess + 1] = all & PartitionTable.twoAwayMask(guess);
+    }
+    var start = new CountDownLatch(1);
+    List<Future<GuessAdvisor.Advice>> futures = new ArrayList<>();
+    try (var executor = Executors.newFixedThreadPool(8)) {
+      for (long universe : universes) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return advisor.advise(universe, 5);
+                }));
+      }
+      start.countDown();
+      for (var future : futures) {
+        future.get();
+      }
+    }
+    assertThat(new HashSet<>(table.puts.values())).containsExactly(1);
+    assertThat(inFlight.size()).isEqualTo(0);
+
+    var sequential = ConnectionsGuessing.builder().exploitSymmetry(true).build();
+    for (long universe : universes) {
+      assertThat(advisor.advise(universe, 5).solvable())
+          .isEqualTo(sequential.search(universe, 5));
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Counts how many times each subproblem big enough to be {@linkplain InFlightSearches claimed} is
+   * recorded. A subproblem is recorded once each time it is searched.
+   */
+  private static class CountingTable implements ResultCache {
+    final ResultCache delegate;
+    final ConcurrentHashMap<List<Long>, Integer> puts = new ConcurrentHashMap<>();
+
+    CountingTable(ResultCache delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int get(long universe, int lives) {
+      return delegate.get(universe, lives);
+    }
+
+    @Override
+    public void put(long universe, int lives, int value) {
+      if (lives >= InFlightSearches.DEFAULT_MIN_LIVES) {
+        puts.merge(List.of(universe, (long) lives), 1, Integer::sum);
+      }
+      delegate.put(universe, lives, value);
+    }
+
+    @Override
+    public void clear() {
+      delegate.clear();
+    }
+
+    @Override
+    public int capacity() {
+      return delegate.capacity();
+    }
+
+    @Override
+    public int size() {
+      return delegate.size();
+    }
+
+    @Override
+    public long hits() {
+      return delegate.hits();
+    }
+
+    @Override
+    public long misses() {
+      return delegate.misses();
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+      delegate.forEach(visitor);
+    }
+  }
+}
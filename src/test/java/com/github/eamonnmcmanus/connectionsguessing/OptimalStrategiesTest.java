@@ -0,0 +1,148 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.google.common.collect.Range;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class OptimalStrategiesTest {
+  private static final int ABCD = ConnectionsGuessing.Connection.fromString("ABCD").aIndex();
+
+  /** A universe of 6 connections, which has 36 optimal strategies with 2 lives. */
+  private static final long SMALL_UNIVERSE =
+      PartitionTable.oneAwayMask(ABCD) & PartitionTable.oneAwayMask(ABCD + 1);
+
+  private static OptimalStrategies strategies() {
+    return new OptimalStrategies(ConnectionsGuessing.builder().exploitSymmetry(true).build());
+  }
+
+  @Test
+  public void smallCounts() {
+    var strategies = strategies();
+    // With one life, any connection in the universe is as good a guess as any other.
+    assertThat(strategies.optimalGuesses(PartitionTable.ALL, 1)).isEqualTo(PartitionTable.ALL);
+    assertThat(strategies.count(PartitionTable.ALL, 1)).isEqualTo(BigInteger.valueOf(35));
+    // With two lives, every first guess is optimal, and then any connection in what remains.
+    long oneAway = PartitionTable.oneAwayMask(ABCD);
+    long twoAway = PartitionTable.twoAwayMask(ABCD);
+    assertThat(strategies.count(PartitionTable.ALL, 2))
+        .isEqualTo(BigInteger.valueOf(35L * Long.bitCount(oneAway) * Long.bitCount(twoAway)));
+  }
+
+  @Test
+  public void sameAsBruteForce() {
+    // Try every strategy with 2 lives: a first guess, and a second guess for each response.
+    long universe = SMALL_UNIVERSE;
+    var strategies = strategies();
+    int best = 0;
+    long count = 0;
+    for (int first = 0; first < PartitionTable.SIZE; first++) {
+      for (int oneAwayGuess = 0; oneAwayGuess < PartitionTable.SIZE; oneAwayGuess++) {
+        for (int twoAwayGuess = 0; twoAwayGuess < PartitionTable.SIZE; twoAwayGuess++) {
+          // Responses that can't happen don't need a second guess.
+          if ((universe & PartitionTable.oneAwayMask(first)) == 0 && oneAwayGuess > 0
+              || (universe & PartitionTable.twoAwayMask(first)) == 0 && twoAwayGuess > 0) {
+            continue;
+          }
+          var strategy = new TwoGuesses(first, oneAwayGuess, twoAwayGuess);
+          int found = 0;
+          for (long rest = universe; rest != 0; rest &= rest - 1) {
+            if (StrategySimulator.play(strategy, Long.numberOfTrailingZeros(rest)) != 0) {
+              found++;
+            }
+          }
+          if (found > best) {
+            best = found;
+            count = 0;
+          }
+          if (found == best) {
+            count++;
+          }
+        }
+      }
+    }
+    assertThat(strategies.count(universe, 2)).isEqualTo(BigInteger.valueOf(count));
+  }
+
+  @Test
+  public void sharedSubproblems() {
+    var strategies = strategies();
+    BigInteger count = strategies.count(PartitionTable.ALL, 5);
+    assertThat(count.bitLength()).isGreaterThan(Long.SIZE / 2);
+    assertThat(strategies.nodeCount()).isLessThan(100_000);
+  }
+
+  @Test
+  public void samplesAreOptimal() {
+    var strategies = strategies();
+    var random = new Random(1);
+    for (int i = 0; i < 10; i++) {
+      Strategy strategy = strategies.sample(PartitionTable.ALL, 4, random);
+      assertThat(StrategySimulator.exhaustive(strategy).wins()).isEqualTo(15);
+    }
+  }
+
+  @Test
+  public void samplesAreUniform() {
+    long universe = SMALL_UNIVERSE;
+    var strategies = strategies();
+    int count = strategies.count(universe, 2).intValueExact();
+    assertThat(count).isEqualTo(36);
+    var random = new Random(1);
+    Map<String, Integer> frequencies = new HashMap<>();
+    int samples = count * 1000;
+    for (int i = 0; i < samples; i++) {
+      Strategy strategy = strategies.sample(universe, 2, random);
+      frequencies.merge(describe(strategy, strategy.root()), 1, Integer::sum);
+    }
+    assertThat(frequencies).hasSize(count);
+    for (int frequency : frequencies.values()) {
+      assertThat(frequency).isIn(Range.closed(800, 1200));
+    }
+  }
+
+  private static String describe(Strategy strategy, int node) {
+    if (node == StrategyTree.NO_CHILD) {
+      return "-";
+    }
+    return strategy.guess(node)
+        + "("
+        + describe(strategy, strategy.child(node, Score.ONE_AWAY))
+        + ","
+        + describe(strategy, strategy.child(node, Score.TWO_AWAY))
+        + ")";
+  }
+
+  /** A strategy with 2 lives. Node 0 is the first guess, and nodes 1 and 2 are the second. */
+  private record TwoGuesses(int first, int oneAwayGuess, int twoAwayGuess) implements Strategy {
+    @Override
+    public int root() {
+      return 0;
+    }
+
+    @Override
+    public int guess(int node) {
+      return switch (node) {
+        case 0 -> first;
+        case 1 -> oneAwayGuess;
+        default -> twoAwayGuess;
+      };
+    }
+
+    @Override
+    public int child(int node, Score response) {
+      if (node != 0) {
+        return StrategyTree.NO_CHILD;
+      }
+      return response == Score.ONE_AWAY ? 1 : 2;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class PartitionTableTest {
+  @Test
+  public void masksPartitionEveryGuess() {
+    for (int guess = 0; guess < PartitionTable.SIZE; guess++) {
+      long match = PartitionTable.matchMask(guess);
+      long oneAway = PartitionTable.oneAwayMask(guess);
+      long twoAway = PartitionTable.twoAwayMask(guess);
+      assertThat(match).isEqualTo(1L << guess);
+      assertThat(match & oneAway).isEqualTo(0);
+      assertThat(match & twoAway).isEqualTo(0);
+      assertThat(oneAway & twoAway).isEqualTo(0);
+      assertThat(match | oneAway | twoAway).isEqualTo(PartitionTable.ALL);
+      assertThat(Long.bitCount(oneAway)).isEqualTo(16);
+      assertThat(Long.bitCount(twoAway)).isEqualTo(18);
+    }
+  }
+
+  @Test
+  public void masksAgreeWithScoreFor() {
+    for (int guess = 0; guess < PartitionTable.SIZE; guess++) {
+      for (int i = 0; i < PartitionTable.SIZE; i++) {
+        Score score = PartitionTable.connection(i).scoreFor(PartitionTable.connection(guess));
+        assertThat(PartitionTable.mask(guess, score) & (1L << i)).isNotEqualTo(0);
+      }
+    }
+  }
+
+  @Test
+  public void complement() {
+    for (int i = 0; i < PartitionTable.SIZE; i++) {
+      Connection connection = PartitionTable.connection(i);
+      Connection complement = new Connection(~connection.bits() & 0xff);
+      assertThat(PartitionTable.complement(1L << i)).isEqualTo(1L << complement.index());
+      assertThat(complement.aIndex()).isEqualTo(i);
+    }
+    assertThat(PartitionTable.complement(PartitionTable.ALL)).isEqualTo(PartitionTable.ALL);
+  }
+}
@@ -0,0 +1,173 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author emcmanus
+ */
+public class PersistentCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final int ABSENT = TranspositionTable.ABSENT;
+
+  @Test
+  public void putAndGet() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 100)) {
+      assertThat(cache.capacity()).isEqualTo(128);
+      assertThat(cache.get(0b1011, 3, false)).isEqualTo(ABSENT);
+      cache.put(0b1011, 3, false, 2);
+      cache.put(0b1011, 3, true, 1);
+      cache.put(0b1011, 4, false, 0);
+      assertThat(cache.get(0b1011, 3, false)).isEqualTo(2);
+      assertThat(cache.get(0b1011, 3, true)).isEqualTo(1);
+      assertThat(cache.get(0b1011, 4, false)).isEqualTo(0);
+      assertThat(cache.get(0b1011, 5, false)).isEqualTo(ABSENT);
+      assertThat(cache.size()).isEqualTo(3);
+    }
+    // The entries are still there after reopening, and the existing capacity wins.
+    try (var cache = PersistentCache.open(file, 1000)) {
+      assertThat(cache.capacity()).isEqualTo(128);
+      assertThat(cache.size()).isEqualTo(3);
+      assertThat(cache.get(0b1011, 3, false)).isEqualTo(2);
+      assertThat(cache.get(0b1011, 3, true)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void fileInUse() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 16)) {
+      cache.put(0b1011, 3, false, 2);
+      IOException e = assertThrows(IOException.class, () -> PersistentCache.open(file, 16));
+      assertThat(e).hasMessageThat().contains("already in use");
+      assertThat(cache.get(0b1011, 3, false)).isEqualTo(2);
+    }
+    // Closing the cache released the lock.
+    try (var cache = PersistentCache.open(file, 16)) {
+      assertThat(cache.get(0b1011, 3, false)).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void corruptEntryIsIgnored() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 16)) {
+      cache.put(0b111, 2, false, 3);
+    }
+    // Flip a bit of the value of the only entry, wherever it is.
+    try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+      for (int slot = 0; slot < 16; slot++) {
+        long offset = PersistentCache.HEADER_BYTES + slot * PersistentCache.SLOT_BYTES;
+        raf.seek(offset);
+        if (raf.readLong() != 0) {
+          raf.seek(offset + 8);
+          long entry = raf.readLong();
+          raf.seek(offset + 8);
+          raf.writeLong(entry ^ 1);
+        }
+      }
+    }
+    try (var cache = PersistentCache.open(file, 16)) {
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(ABSENT);
+      cache.put(0b111, 2, false, 3);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(3);
+    }
+  }
+
+  @Test
+  public void wrongVersionIsReinitialized() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 16)) {
+      cache.put(0b111, 2, false, 3);
+    }
+    try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.seek(4);
+      raf.writeInt(PersistentCache.VERSION + 1);
+    }
+    try (var cache = PersistentCache.open(file, 16)) {
+      assertThat(cache.size()).isEqualTo(0);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(ABSENT);
+    }
+    // A truncated file, for example after a crash during initialization, is also reinitialized.
+    Files.write(file, new byte[] {1, 2, 3});
+    try (var cache = PersistentCache.open(file, 16)) {
+      assertThat(cache.size()).isEqualTo(0);
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void overfullFileIsReinitialized() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 16)) {
+      cache.put(0b111, 2, false, 3);
+    }
+    fillKeysWithGarbage(file, 16);
+    try (var cache = PersistentCache.open(file, 16)) {
+      assertThat(cache.capacity()).isEqualTo(16);
+      assertThat(cache.size()).isEqualTo(0);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(ABSENT);
+      cache.put(0b111, 2, false, 3);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(3);
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void fileCorruptedWhileOpenDoesNotHang() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    try (var cache = PersistentCache.open(file, 16)) {
+      // The lock is advisory, so nothing stops another writer from changing the mapped file.
+      fillKeysWithGarbage(file, 16);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(ABSENT);
+      cache.put(0b111, 2, false, 3);
+      assertThat(cache.get(0b111, 2, false)).isEqualTo(ABSENT);
+    }
+  }
+
+  /** Gives every slot a nonzero key that no real entry could have. */
+  private static void fillKeysWithGarbage(Path file, int slotCount) throws IOException {
+    try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+      for (int slot = 0; slot < slotCount; slot++) {
+        raf.seek(PersistentCache.HEADER_BYTES + slot * PersistentCache.SLOT_BYTES);
+        raf.writeLong(-1 - slot);
+      }
+    }
+  }
+
+  @Test
+  public void warmRunSkipsRecursion() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("cache");
+    int cold;
+    try (var cache = PersistentCache.open(file, 1 << 16)) {
+      var metrics = SearchMetrics.create();
+      var guessing =
+          ConnectionsGuessing.builder()
+              .exploitSymmetry(true)
+              .metrics(metrics)
+              .persistentCache(cache)
+              .build();
+      assertThat(guessing.searchAbcd(6)).isEqualTo(35);
+      cold = (int) metrics.searchCalls();
+    }
+    try (var cache = PersistentCache.open(file, 1 << 16)) {
+      var metrics = SearchMetrics.create();
+      var guessing =
+          ConnectionsGuessing.builder()
+              .exploitSymmetry(true)
+              .metrics(metrics)
+              .persistentCache(cache)
+              .build();
+      assertThat(guessing.searchAbcd(6)).isEqualTo(35);
+      assertThat(metrics.searchCalls()).isLessThan(cold / 10);
+    }
+  }
+}
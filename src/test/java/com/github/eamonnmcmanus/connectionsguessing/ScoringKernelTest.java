@@ -0,0 +1,67 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assume.assumeTrue;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class ScoringKernelTest {
+  @Test
+  public void scalarConnectionsMatchScoreFor() {
+    long[] masks = new long[3];
+    for (Connection guess : Connection.ALL_CONNECTIONS) {
+      ScoringKernel.scalar().scoreConnections(guess.bits(), masks);
+      var scores = ConnectionsGuessing.ConnectionSet.ALL_A_CONNECTIONS.scoresFor(guess);
+      for (Score score : Score.values()) {
+        assertThat(masks[score.ordinal()]).isEqualTo(scores.get(score).aConnectionMask());
+      }
+    }
+  }
+
+  @Test
+  public void vectorConnectionsSameAsScalar() {
+    assumeTrue(ScoringKernel.vectorAvailable());
+    ScoringKernel vector = ScoringKernel.vector().get();
+    long[] scalarMasks = new long[3];
+    long[] vectorMasks = new long[3];
+    for (Connection guess : Connection.ALL_CONNECTIONS) {
+      ScoringKernel.scalar().scoreConnections(guess.bits(), scalarMasks);
+      vector.scoreConnections(guess.bits(), vectorMasks);
+      assertWithMessage("%s", guess).that(vectorMasks).isEqualTo(scalarMasks);
+    }
+  }
+
+  @Test
+  public void vectorPartitionsSameAsScalar() {
+    assumeTrue(ScoringKernel.vectorAvailable());
+    ScoringKernel vector = ScoringKernel.vector().get();
+    Random random = new Random(1234);
+    long[] universe = FullGame.all();
+    for (int i = 0; i < universe.length; i++) {
+      universe[i] &= random.nextLong();
+    }
+    for (int guess = 0; guess < FullGame.GUESS_COUNT; guess += 97) {
+      for (Score score : Score.values()) {
+        assertWithMessage("%s %s", guess, score)
+            .that(FullGame.filter(universe, guess, score, vector))
+            .isEqualTo(FullGame.filter(universe, guess, score, ScoringKernel.scalar()));
+      }
+      assertThat(FullGame.split(universe, guess, vector))
+          .isEqualTo(FullGame.split(universe, guess, ScoringKernel.scalar()));
+    }
+  }
+
+  @Test
+  public void vectorChosenWhenAvailable() {
+    assumeTrue(ScoringKernel.vectorAvailable());
+    assertThat(ScoringKernel.get()).isSameInstanceAs(ScoringKernel.vector().get());
+    assertThat(ScoringKernel.get().toString()).isEqualTo("vector");
+  }
+}
@@ -0,0 +1,181 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Objective;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author emcmanus
+ */
+public class SearchCheckpointTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final Duration INTERVAL = Duration.ofHours(1);
+
+  @Test
+  public void saveAndLoad() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("checkpoint");
+    var table = new TranspositionTable(64);
+    try (var checkpoint =
+        SearchCheckpoint.start(file, INTERVAL, table, false, Objective.MOST_FOUND)) {
+      table.put(0b1011, 3, 2);
+      table.put(PartitionTable.ALL, 5, 28);
+      checkpoint.put(0b1011, 3, 7, 1);
+      assertThat(checkpoint.get(0b1011, 3, 7)).isEqualTo(1);
+      assertThat(checkpoint.get(0b1011, 3, 8)).isEqualTo(ResultCache.ABSENT);
+    }
+    var newTable = new TranspositionTable(64);
+    try (var checkpoint =
+        SearchCheckpoint.resume(file, INTERVAL, newTable, false, Objective.MOST_FOUND)) {
+      assertThat(newTable.size()).isEqualTo(2);
+      assertThat(newTable.get(0b1011, 3)).isEqualTo(2);
+      assertThat(newTable.get(PartitionTable.ALL, 5)).isEqualTo(28);
+      assertThat(checkpoint.frontierSize()).isEqualTo(1);
+      assertThat(checkpoint.get(0b1011, 3, 7)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void resumeWithoutFile() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("checkpoint");
+    var table = new TranspositionTable(64);
+    try (var checkpoint =
+        SearchCheckpoint.resume(file, INTERVAL, table, false, Objective.MOST_FOUND)) {
+      assertThat(table.size()).isEqualTo(0);
+      assertThat(checkpoint.frontierSize()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void rejectsBadFiles() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("checkpoint");
+    var table = new TranspositionTable(64);
+    table.put(0b1011, 3, 2);
+    SearchCheckpoint.start(file, INTERVAL, table, false, Objective.MOST_FOUND).close();
+    assertThrows(
+        IOException.class,
+        () -> SearchCheckpoint.resume(file, INTERVAL, table, true, Objective.MOST_FOUND));
+    assertThrows(
+        IOException.class,
+        () -> SearchCheckpoint.resume(file, INTERVAL, table, false, Objective.FEWEST_GUESSES));
+    // Flip a bit of the only result.
+    try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.seek(12 + 7);
+      int b = raf.read();
+      raf.seek(12 + 7);
+      raf.write(b ^ 1);
+    }
+    assertThrows(
+        IOException.class,
+        () -> SearchCheckpoint.resume(file, INTERVAL, table, false, Objective.MOST_FOUND));
+  }
+
+  @Test
+  public void killedSearchResumes() throws IOException {
+    Path file = temporaryFolder.getRoot().toPath().resolve("checkpoint");
+    var uninterrupted = new CountingCache(new TranspositionTable(1 << 16));
+    assertThat(builder(uninterrupted).build().searchAbcd(5)).isEqualTo(28);
+
+    // Kill the search partway through, just after a checkpoint.
+    var killed = new CountingCache(new TranspositionTable(1 << 16));
+    var checkpoint = SearchCheckpoint.start(file, INTERVAL, killed, false, Objective.MOST_FOUND);
+    killed.killAfter(uninterrupted.puts / 2, checkpoint);
+    var guessing = builder(killed).checkpoint(checkpoint).build();
+    assertThrows(KilledException.class, () -> guessing.searchAbcd(5));
+    assertThat(checkpoint.checkpoints()).isEqualTo(1);
+
+    var resumed = new CountingCache(new TranspositionTable(1 << 16));
+    try (var newCheckpoint =
+        SearchCheckpoint.resume(file, INTERVAL, resumed, false, Objective.MOST_FOUND)) {
+      assertThat(newCheckpoint.frontierSize()).isGreaterThan(0);
+      int loaded = resumed.puts;
+      assertThat(builder(resumed).checkpoint(newCheckpoint).build().searchAbcd(5)).isEqualTo(28);
+      // The resumed search only computed what the killed one had not.
+      assertThat(resumed.puts - loaded).isLessThan(uninterrupted.puts);
+    }
+  }
+
+  private static ConnectionsGuessing.Builder builder(ResultCache cache) {
+    return ConnectionsGuessing.builder()
+        .transpositionTable(cache)
+        .exploitSymmetry(true)
+        .branchAndBound(true)
+        .dedupeGuesses(true);
+  }
+
+  private static class KilledException extends RuntimeException {}
+
+  /** A cache that counts new results, and can simulate the process being killed. */
+  private static class CountingCache implements ResultCache {
+    private final ResultCache delegate;
+    int puts;
+    private int killAfter = Integer.MAX_VALUE;
+    private SearchCheckpoint checkpoint;
+
+    CountingCache(ResultCache delegate) {
+      this.delegate = delegate;
+    }
+
+    void killAfter(int puts, SearchCheckpoint checkpoint) {
+      this.killAfter = puts;
+      this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public int get(long universe, int lives) {
+      return delegate.get(universe, lives);
+    }
+
+    @Override
+    public void put(long universe, int lives, int value) {
+      delegate.put(universe, lives, value);
+      if (++puts == killAfter) {
+        try {
+          checkpoint.checkpoint();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        throw new KilledException();
+      }
+    }
+
+    @Override
+    public void clear() {
+      delegate.clear();
+    }
+
+    @Override
+    public int capacity() {
+      return delegate.capacity();
+    }
+
+    @Override
+    public int size() {
+      return delegate.size();
+    }
+
+    @Override
+    public long hits() {
+      return delegate.hits();
+    }
+
+    @Override
+    public long misses() {
+      return delegate.misses();
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+      delegate.forEach(visitor);
+    }
+  }
+}
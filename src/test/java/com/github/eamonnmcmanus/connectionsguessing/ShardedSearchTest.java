@@ -0,0 +1,75 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class ShardedSearchTest {
+  @Test
+  public void sameAsSingleProcess() throws Exception {
+    var guessing = ConnectionsGuessing.builder().build();
+    try (var sharded = new ShardedSearch(2, 2, false, 0)) {
+      for (int lives = 3; lives <= 6; lives++) {
+        assertThat(sharded.search(PartitionTable.ALL, lives))
+            .isEqualTo(guessing.search(PartitionTable.ALL, lives));
+      }
+      long oneAway = PartitionTable.oneAwayMask(0);
+      assertThat(sharded.search(oneAway, 4)).isEqualTo(guessing.search(oneAway, 4));
+      assertThat(sharded.restarts()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void onlyGuessUniverse() throws Exception {
+    try (var sharded = new ShardedSearch(1, 1, true, 0)) {
+      assertThat(sharded.search(PartitionTable.ALL, 5)).isEqualTo(26);
+    }
+  }
+
+  @Test
+  public void failedWorkersAreReplaced() throws Exception {
+    // Each worker process crashes on its 21st request, so the work has to be reassigned.
+    try (var sharded = faulty("--fail-after", 20, TIMEOUT, 100)) {
+      assertThat(sharded.search(PartitionTable.ALL, 5)).isEqualTo(28);
+      assertThat(sharded.restarts()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void stuckWorkersAreReplaced() throws Exception {
+    // Each worker process stops responding on its 21st request, so the request has to time out.
+    // The timeout also covers starting the worker's JVM, so it can't be very short on a busy
+    // machine.
+    try (var sharded = faulty("--hang-after", 20, Duration.ofSeconds(10), 100)) {
+      assertThat(sharded.search(PartitionTable.ALL, 5)).isEqualTo(28);
+      assertThat(sharded.restarts()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void tooManyFailures() {
+    try (var sharded = faulty("--fail-after", 0, TIMEOUT, 3)) {
+      assertThrows(IOException.class, () -> sharded.search(PartitionTable.ALL, 5));
+    }
+  }
+
+  private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+  private static ShardedSearch faulty(String fault, int after, Duration timeout, int maxRestarts) {
+    return new ShardedSearch(
+        2,
+        1,
+        false,
+        FaultyWorker.class.getName(),
+        List.of(fault, Integer.toString(after)),
+        timeout,
+        maxRestarts);
+  }
+}
@@ -0,0 +1,42 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class SolvabilityTest {
+  @Test
+  public void minimumLives() {
+    assertThat(new Solvability(false).minimumLives(PartitionTable.ALL)).isEqualTo(6);
+    assertThat(new Solvability(true).minimumLives(PartitionTable.ALL)).isEqualTo(7);
+    assertThat(new Solvability(false).minimumLives(PartitionTable.matchMask(0))).isEqualTo(1);
+  }
+
+  @Test
+  public void sameAsSearch() {
+    var solvability = new Solvability(false);
+    var guessing = ConnectionsGuessing.builder().exploitSymmetry(true).branchAndBound(true).build();
+    Random random = new Random(1234);
+    for (int i = 0; i < 200; i++) {
+      long universe = random.nextLong() & PartitionTable.ALL;
+      // Keep some universes small enough to be solvable with few lives.
+      if (i % 2 == 0) {
+        universe &= random.nextLong() & random.nextLong();
+      }
+      if (universe == 0) {
+        continue;
+      }
+      int size = Long.bitCount(universe);
+      for (int lives = 1; lives <= 6; lives++) {
+        assertWithMessage("%s with %s lives", universe, lives)
+            .that(solvability.solvableWithin(universe, lives))
+            .isEqualTo(guessing.search(universe, lives) == size);
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import com.github.eamonnmcmanus.connectionsguessing.StrategySimulator.Report;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author emcmanus
+ */
+public class StrategySimulatorTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void optimalStrategy() throws IOException {
+    var guessing = ConnectionsGuessing.builder().exploitSymmetry(true).build();
+    var tree = StrategyTree.build(guessing, PartitionTable.ALL, 4);
+    Report report = StrategySimulator.exhaustive(tree);
+    assertThat(report.games()).isEqualTo(35);
+    assertThat(report.wins()).isEqualTo(guessing.searchAbcd(4));
+    assertThat(report.guessHistogram().stream().mapToLong(n -> n).sum()).isEqualTo(35);
+    assertThat(Long.bitCount(report.lostConnections())).isEqualTo(35 - report.wins());
+    assertThat(report.worstGuesses()).isEqualTo(4);
+    assertThat(report.worstConnections() & report.lostConnections()).isEqualTo(0);
+
+    // The same strategy read back from a file plays the same games.
+    Path file = temporaryFolder.getRoot().toPath().resolve("strategy");
+    tree.write(file);
+    Report mapped = StrategySimulator.exhaustive(MappedStrategy.open(file));
+    assertThat(mapped.guessHistogram()).isEqualTo(report.guessHistogram());
+    assertThat(mapped.worstConnections()).isEqualTo(report.worstConnections());
+  }
+
+  @Test
+  public void handWrittenStrategy() {
+    Report report = StrategySimulator.exhaustive(new InOrder(4));
+    assertThat(report.guessHistogram().subList(0, 6)).containsExactly(31L, 1L, 1L, 1L, 1L, 0L);
+    assertThat(report.worstGuesses()).isEqualTo(4);
+    assertThat(report.worstConnections()).isEqualTo(1L << 3);
+    assertThat(report.lostConnections()).isEqualTo(PartitionTable.ALL & ~0b1111);
+    assertThat(report.meanGuessesToWin()).isEqualTo(2.5);
+  }
+
+  @Test
+  public void sampled() {
+    List<Report> progress = new ArrayList<>();
+    long games = StrategySimulator.BATCH_GAMES + 1000;
+    Report report = StrategySimulator.sampled(new InOrder(7), games, 1, progress::add);
+    assertThat(progress).hasSize(2);
+    assertThat(progress.get(0).games()).isEqualTo(StrategySimulator.BATCH_GAMES);
+    assertThat(report.games()).isEqualTo(games);
+    assertThat(report.winRate()).isWithin(0.01).of(7.0 / 35);
+    // Every connection is drawn, so the worst and lost cases are exactly as for one game each.
+    assertThat(report.worstConnections()).isEqualTo(1L << 6);
+    assertThat(report.lostConnections()).isEqualTo(PartitionTable.ALL & ~0b1111111);
+    // The same seed gives the same games.
+    Report again = StrategySimulator.sampled(new InOrder(7), games, 1, r -> {});
+    assertThat(again.guessHistogram()).isEqualTo(report.guessHistogram());
+  }
+
+  @Test
+  public void endlessStrategy() {
+    Strategy endless =
+        new Strategy() {
+          @Override
+          public int root() {
+            return 0;
+          }
+
+          @Override
+          public int guess(int node) {
+            return 0;
+          }
+
+          @Override
+          public int child(int node, Score response) {
+            return 0;
+          }
+        };
+    assertThrows(IllegalStateException.class, () -> StrategySimulator.exhaustive(endless));
+  }
+
+  /**
+   * Guesses the A-connections in order, ignoring the responses. Node <i>i</i> makes guess <i>i</i>.
+   */
+  private record InOrder(int lives) implements Strategy {
+    @Override
+    public int root() {
+      return 0;
+    }
+
+    @Override
+    public int guess(int node) {
+      return node;
+    }
+
+    @Override
+    public int child(int node, Score response) {
+      return node + 1 < lives ? node + 1 : StrategyTree.NO_CHILD;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author emcmanus
+ */
+public class StrategyTreeTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void strategyFindsAsManyAsSearch() {
+    for (int lives = 1; lives <= 6; lives++) {
+      var guessing = ConnectionsGuessing.builder().exploitSymmetry(true).build();
+      var tree = StrategyTree.build(guessing, PartitionTable.ALL, lives);
+      int expected = lives == 1 ? 1 : guessing.searchAbcd(lives);
+      assertThat(tree.solvable()).isEqualTo(expected);
+      assertThat(play(tree, lives)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void subtreesAreShared() {
+    var guessing = ConnectionsGuessing.builder().build();
+    var tree = StrategyTree.build(guessing, PartitionTable.ALL, 6);
+    // A tree would have a node for every guess made while finding each of the 35 solutions.
+    assertThat(tree.nodeCount()).isLessThan(35 * 6);
+  }
+
+  @Test
+  public void identicalSubtreesAreShared() {
+    var guessing = ConnectionsGuessing.builder().build();
+    var builder = new StrategyTree.Builder(guessing);
+    // With one life left, {A, B} and {A, C} both guess A and find 1.
+    long ab = 0b011;
+    long ac = 0b101;
+    int node = builder.node(ab, 1);
+    assertThat(builder.node(ac, 1)).isEqualTo(node);
+    var tree = builder.build(node);
+    assertThat(tree.nodeCount()).isEqualTo(1);
+    assertThat(tree.guess(node)).isEqualTo(0);
+    assertThat(tree.solvable()).isEqualTo(1);
+    // A different first guess makes a different record.
+    assertThat(builder.node(0b110, 1)).isNotEqualTo(node);
+  }
+
+  @Test
+  public void writeAndMap() throws IOException {
+    var guessing = ConnectionsGuessing.builder().build();
+    var tree = StrategyTree.build(guessing, PartitionTable.ALL, 5);
+    Path file = temporaryFolder.newFile().toPath();
+    tree.write(file);
+    assertThat(Files.size(file))
+        .isEqualTo(StrategyTree.HEADER_BYTES + tree.nodeCount() * StrategyTree.NODE_BYTES);
+
+    var mapped = MappedStrategy.open(file);
+    assertThat(mapped.nodeCount()).isEqualTo(tree.nodeCount());
+    assertThat(mapped.solvable()).isEqualTo(tree.solvable());
+    for (Score[] responses : allResponses(5)) {
+      assertThat(mapped.nextGuess(responses)).isEqualTo(tree.nextGuess(responses));
+    }
+    assertThrows(IllegalArgumentException.class, () -> mapped.nextGuess(Score.MATCH));
+  }
+
+  @Test
+  public void badFile() throws IOException {
+    Path file = temporaryFolder.newFile().toPath();
+    Files.write(file, new byte[StrategyTree.HEADER_BYTES]);
+    assertThrows(IOException.class, () -> MappedStrategy.open(file));
+  }
+
+  @Test
+  public void corruptRecords() throws IOException {
+    var guessing = ConnectionsGuessing.builder().build();
+    var tree = StrategyTree.build(guessing, PartitionTable.ALL, 3);
+    Path file = temporaryFolder.newFile().toPath();
+    tree.write(file);
+    var mapped = MappedStrategy.open(file);
+    assertThrows(IndexOutOfBoundsException.class, () -> mapped.guess(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> mapped.guess(tree.nodeCount()));
+
+    int root = StrategyTree.HEADER_BYTES + tree.root() * StrategyTree.NODE_BYTES;
+    try (var raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.seek(root + 4);
+      raf.writeInt(tree.nodeCount());
+    }
+    IOException e = assertThrows(IOException.class, () -> MappedStrategy.open(file));
+    assertThat(e).hasMessageThat().contains("has child " + tree.nodeCount());
+
+    Path otherFile = temporaryFolder.newFile().toPath();
+    tree.write(otherFile);
+    try (var raf = new RandomAccessFile(otherFile.toFile(), "rw")) {
+      raf.seek(root);
+      raf.writeByte(PartitionTable.SIZE);
+    }
+    e = assertThrows(IOException.class, () -> MappedStrategy.open(otherFile));
+    assertThat(e).hasMessageThat().contains("has guess " + PartitionTable.SIZE);
+  }
+
+  /** Plays the strategy against every possible solution and returns how many it finds. */
+  private static int play(StrategyTree tree, int lives) {
+    int found = 0;
+    for (int solution = 0; solution < PartitionTable.SIZE; solution++) {
+      List<Score> responses = new ArrayList<>();
+      for (int life = 0; life < lives; life++) {
+        int guess = tree.nextGuess(responses.toArray(new Score[0]));
+        if (guess == StrategyTree.NO_GUESS) {
+          break;
+        }
+        Score score =
+            PartitionTable.connection(solution).scoreFor(PartitionTable.connection(guess));
+        if (score == Score.MATCH) {
+          found++;
+          break;
+        }
+        responses.add(score);
+      }
+    }
+    return found;
+  }
+
+  /** Returns every sequence of up to {@code length - 1} non-matching responses. */
+  private static List<Score[]> allResponses(int length) {
+    List<Score[]> result = new ArrayList<>();
+    result.add(new Score[0]);
+    for (int i = 0; i < result.size(); i++) {
+      Score[] responses = result.get(i);
+      if (responses.length < length - 1) {
+        for (Score score : new Score[] {Score.ONE_AWAY, Score.TWO_AWAY}) {
+          Score[] longer = Arrays.copyOf(responses, responses.length + 1);
+          longer[responses.length] = score;
+          result.add(longer);
+        }
+      }
+    }
+    return result;
+  }
+}
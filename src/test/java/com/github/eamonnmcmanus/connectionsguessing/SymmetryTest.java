@@ -0,0 +1,71 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.ConnectionSet;
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class SymmetryTest {
+  @Test
+  public void permutationCount() {
+    assertThat(Symmetry.PERMUTATION_COUNT).isEqualTo(5040);
+    assertThat(Symmetry.ALL).hasLength(5040);
+    for (int i = 0; i < Symmetry.A_CONNECTION_COUNT; i++) {
+      assertThat(Symmetry.image(0, i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void everyGuessEquivalentAtStart() {
+    int representatives = 0;
+    for (int i = 0; i < Symmetry.A_CONNECTION_COUNT; i++) {
+      if (Symmetry.isOrbitRepresentative(Symmetry.ALL, i)) {
+        representatives++;
+      }
+    }
+    assertThat(representatives).isEqualTo(1);
+  }
+
+  @Test
+  public void stabilizerOfAbcd() {
+    // Permutations of BCD times permutations of EFGH.
+    int abcd = Connection.fromString("ABCD").aIndex();
+    assertThat(Symmetry.stabilizer(Symmetry.ALL, abcd)).hasLength(6 * 24);
+  }
+
+  @Test
+  public void canonicalize() {
+    long abcd = 1L << Connection.fromString("ABCD").aIndex();
+    long efgh = 1L << Connection.fromString("AFGH").aIndex();
+    assertThat(Symmetry.canonicalize(abcd)).isEqualTo(Symmetry.canonicalize(efgh));
+
+    var scores = ConnectionSet.ALL_A_CONNECTIONS.scoresFor(Connection.fromString("ABCD"));
+    long oneAway = scores.get(Score.ONE_AWAY).aConnectionMask();
+    long twoAway = scores.get(Score.TWO_AWAY).aConnectionMask();
+    assertThat(Symmetry.canonicalize(oneAway)).isNotEqualTo(Symmetry.canonicalize(twoAway));
+    for (int p : new int[] {1, 17, 5039}) {
+      assertThat(Symmetry.canonicalize(Symmetry.apply(p, oneAway)))
+          .isEqualTo(Symmetry.canonicalize(oneAway));
+    }
+  }
+
+  @Test
+  public void searchResultsUnchanged() {
+    var plain = ConnectionsGuessing.builder().build();
+    var symmetric = ConnectionsGuessing.builder().exploitSymmetry(true).build();
+    for (int lives = 2; lives <= 7; lives++) {
+      assertThat(symmetric.searchAbcd(lives)).isEqualTo(plain.searchAbcd(lives));
+    }
+    var plainOnly = ConnectionsGuessing.builder().onlyGuessUniverse(true).build();
+    var symmetricOnly =
+        ConnectionsGuessing.builder().onlyGuessUniverse(true).exploitSymmetry(true).build();
+    for (int lives = 2; lives <= 7; lives++) {
+      assertThat(symmetricOnly.searchAbcd(lives)).isEqualTo(plainOnly.searchAbcd(lives));
+    }
+  }
+}
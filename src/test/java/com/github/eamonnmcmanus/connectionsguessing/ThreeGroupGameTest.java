@@ -0,0 +1,139 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Score;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class ThreeGroupGameTest {
+  @Test
+  public void counts() {
+    long[] all = ThreeGroupGame.all();
+    assertThat(ThreeGroupGame.size(all)).isEqualTo(ThreeGroupGame.PARTITION_COUNT);
+    assertThat(ThreeGroupGame.guess("ABCD")).isEqualTo(0);
+    assertThat(ThreeGroupGame.guessMask(ThreeGroupGame.GUESS_COUNT - 1)).isEqualTo(0xF00);
+    int abcd = ThreeGroupGame.guess("ABCD");
+    // ABCD matches if the other 8 items are in 2 connections, which they can be in 35 ways. It is
+    // one away if 3 of ABCD are with one of the 8 other items, and then the remaining 8 items are
+    // again in 2 connections.
+    assertThat(ThreeGroupGame.size(ThreeGroupGame.filter(all, abcd, Score.MATCH))).isEqualTo(35);
+    assertThat(ThreeGroupGame.size(ThreeGroupGame.filter(all, abcd, Score.ONE_AWAY)))
+        .isEqualTo(4 * 8 * 35);
+    assertThat(ThreeGroupGame.size(ThreeGroupGame.filter(all, abcd, Score.TWO_AWAY)))
+        .isEqualTo(ThreeGroupGame.PARTITION_COUNT - 35 - 4 * 8 * 35);
+  }
+
+  @Test
+  public void handoff() {
+    long[] all = ThreeGroupGame.all();
+    int efgh = ThreeGroupGame.guess("EFGH");
+    assertThat(ThreeGroupGame.handoff(all, efgh)).isEqualTo(PartitionTable.ALL);
+    // If EFGH is correct and ABCI is one away, the remaining items ABCDIJKL have a connection
+    // containing A and exactly 2 of BCI, or else A and just one of BCI, with the other 2 plus D.
+    long[] oneAway = ThreeGroupGame.filter(all, ThreeGroupGame.guess("ABCI"), Score.ONE_AWAY);
+    long handoff = ThreeGroupGame.handoff(oneAway, efgh);
+    for (int partition = 0; partition < ThreeGroupGame.PARTITION_COUNT; partition++) {
+      if (ThreeGroupGame.score(partition, efgh) == Score.MATCH) {
+        assertThat(ThreeGroupGame.contains(oneAway, partition)).isEqualTo(handoff != 0);
+        break;
+      }
+    }
+    assertThat(Long.bitCount(handoff))
+        .isEqualTo(ThreeGroupGame.size(ThreeGroupGame.filter(oneAway, efgh, Score.MATCH)));
+  }
+
+  @Test
+  public void orbitRepresentatives() {
+    assertThat(ThreeGroupGame.orbitRepresentatives()).asList().containsExactly(0);
+    // After ABCD, a guess is characterized by how many of ABCD it contains.
+    assertThat(ThreeGroupGame.orbitRepresentatives(ThreeGroupGame.guess("ABCD"))).hasLength(5);
+  }
+
+  @Test
+  public void allPartitions() {
+    var game = ThreeGroupGame.create();
+    long[] all = ThreeGroupGame.all();
+    assertThat(game.search(all, 0)).isEqualTo(0);
+    assertThat(game.search(all, 1)).isEqualTo(1);
+    assertThat(game.search(all, 4)).isEqualTo(ThreeGroupGame.maxSolvable(4));
+    assertThat(game.search(all, 5)).isEqualTo(124);
+    assertThat(game.search(all, 5)).isLessThan(ThreeGroupGame.maxSolvable(5));
+  }
+
+  @Test
+  public void callerCanReuseUniverse() {
+    int[] history = {
+      ThreeGroupGame.guess("ABCE"), ThreeGroupGame.guess("ABDF"), ThreeGroupGame.guess("ACGI")
+    };
+    Score[] scores = {Score.ONE_AWAY, Score.TWO_AWAY, Score.ONE_AWAY};
+    long[] universe = ThreeGroupGame.all();
+    for (int i = 0; i < history.length; i++) {
+      universe = ThreeGroupGame.filter(universe, history[i], scores[i]);
+    }
+    long[] original = universe.clone();
+    var game = ThreeGroupGame.create();
+    int originalResult = game.search(universe, 3, history);
+
+    // Add two partitions whose bits are 32 apart in the same word. That leaves Arrays.hashCode
+    // unchanged, so if the search had kept the caller's array as a key, it would find it again.
+    long free = ~universe[0] & ~(universe[0] >>> 32) & 0xFFFF_FFFFL;
+    long pair = Long.lowestOneBit(free);
+    universe[0] |= pair | (pair << 32);
+    assertThat(Arrays.hashCode(universe)).isEqualTo(Arrays.hashCode(original));
+    int changedResult = ThreeGroupGame.create().search(universe, 3, history);
+    assertThat(changedResult).isNotEqualTo(originalResult);
+    assertThat(game.search(universe, 3, history)).isEqualTo(changedResult);
+    assertThat(game.search(original, 3, history)).isEqualTo(originalResult);
+  }
+
+  @Test
+  public void sameAsBruteForce() {
+    int[] history = {
+      ThreeGroupGame.guess("ABCE"), ThreeGroupGame.guess("ABDF"), ThreeGroupGame.guess("ACGI")
+    };
+    Score[] scores = {Score.ONE_AWAY, Score.TWO_AWAY, Score.ONE_AWAY};
+    long[] universe = ThreeGroupGame.all();
+    for (int i = 0; i < history.length; i++) {
+      universe = ThreeGroupGame.filter(universe, history[i], scores[i]);
+    }
+    var game = ThreeGroupGame.create();
+    // The brute force asks about many different 8-item universes, so it needs a big table.
+    var finalEight =
+        ConnectionsGuessing.builder().transpositionTable(new TranspositionTable(1 << 20)).build();
+    for (int lives = 1; lives <= 3; lives++) {
+      assertThat(game.search(universe, lives, history))
+          .isEqualTo(bruteForce(universe, lives, finalEight));
+    }
+  }
+
+  /** Tries every guess, with no symmetry, pruning, or caching of 12-item results. */
+  private static int bruteForce(long[] universe, int lives, ConnectionsGuessing finalEight) {
+    int size = ThreeGroupGame.size(universe);
+    if (lives == 0 || size == 0) {
+      return 0;
+    }
+    if (lives == 1) {
+      // Any guess that might be correct is as good as any other.
+      return 1;
+    }
+    int best = 0;
+    for (int guess = 0; guess < ThreeGroupGame.GUESS_COUNT; guess++) {
+      long[] oneAway = ThreeGroupGame.filter(universe, guess, Score.ONE_AWAY);
+      long[] twoAway = ThreeGroupGame.filter(universe, guess, Score.TWO_AWAY);
+      if (ThreeGroupGame.size(oneAway) == size || ThreeGroupGame.size(twoAway) == size) {
+        continue;
+      }
+      long handoff = ThreeGroupGame.handoff(universe, guess);
+      int value =
+          (handoff == 0 ? 0 : finalEight.search(handoff, lives))
+              + bruteForce(oneAway, lives - 1, finalEight)
+              + bruteForce(twoAway, lives - 1, finalEight);
+      best = Math.max(best, value);
+    }
+    return best;
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+/**
+ * @author emcmanus
+ */
+public class TranspositionTableTest {
+  @Test
+  public void getAndPut() {
+    var table = new TranspositionTable(16);
+    assertThat(table.get(0b101, 3)).isEqualTo(TranspositionTable.ABSENT);
+    table.put(0b101, 3, 2);
+    assertThat(table.get(0b101, 3)).isEqualTo(2);
+    assertThat(table.get(0b101, 4)).isEqualTo(TranspositionTable.ABSENT);
+    assertThat(table.get(0b111, 3)).isEqualTo(TranspositionTable.ABSENT);
+    table.put(0b101, 3, 1);
+    assertThat(table.get(0b101, 3)).isEqualTo(1);
+    assertThat(table.size()).isEqualTo(1);
+    assertThat(table.hits()).isEqualTo(2);
+    assertThat(table.misses()).isEqualTo(3);
+  }
+
+  @Test
+  public void capacityRoundedUpAndBounded() {
+    var table = new TranspositionTable(5);
+    assertThat(table.capacity()).isEqualTo(8);
+    for (long universe = 1; universe <= 10; universe++) {
+      table.put(universe, 2, 1);
+    }
+    assertThat(table.size()).isEqualTo(6);
+    int found = 0;
+    for (long universe = 1; universe <= 10; universe++) {
+      if (table.get(universe, 2) != TranspositionTable.ABSENT) {
+        found++;
+      }
+    }
+    assertThat(found).isEqualTo(6);
+  }
+
+  @Test
+  public void largestUniverse() {
+    var table = new TranspositionTable(16);
+    long all = (1L << 35) - 1;
+    table.put(all, 6, 35);
+    assertThat(table.get(all, 6)).isEqualTo(35);
+    assertThrows(IllegalArgumentException.class, () -> table.put(1L << 35, 6, 1));
+    assertThrows(IllegalArgumentException.class, () -> table.get(0, 6));
+  }
+}
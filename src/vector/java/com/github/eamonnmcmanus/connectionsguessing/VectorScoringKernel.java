@@ -0,0 +1,103 @@
+package com.github.eamonnmcmanus.connectionsguessing;
+
+import static jdk.incubator.vector.VectorOperators.BIT_COUNT;
+
+import com.github.eamonnmcmanus.connectionsguessing.ConnectionsGuessing.Connection;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link ScoringKernel} that uses the Vector API. This class must only be loaded if the {@code
+ * jdk.incubator.vector} module is present, which {@link ScoringKernel#get()} checks.
+ *
+ * <p>The vectors are the platform's preferred size, but that must be one where the lanes evenly
+ * divide each 64-bit mask, since {@link VectorMask#toLong()} has only one bit per lane. That is
+ * true for every size up to 512 bits, but some platforms have larger or odd sizes, and then the
+ * constructor throws {@link UnsupportedOperationException}, so that the scalar kernel is used.
+ *
+ * <p>For A-connections, each byte lane holds the bits of one A-connection. After ANDing with the
+ * guess and counting bits, a count of 0 or 4 is a MATCH, 1 or 3 is ONE_AWAY, and 2 is TWO_AWAY,
+ * and each comparison gives one bit per lane, which is exactly a {@link PartitionTable} mask.
+ *
+ * <p>For {@link FullGame} partitions, each long lane holds one partition, which is 4 connection
+ * masks of 16 bits each. Viewing the lanes as shorts, we count the bits of each connection ANDed
+ * with the guess. A partition is a MATCH if one of its 4 counts is 4, and ONE_AWAY if one is 3.
+ * Folding each group of 4 comparison bits into 1 and compressing gives a bit per partition.
+ */
+final class VectorScoringKernel implements ScoringKernel {
+  private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+  /** The bits of each A-connection, padded with zeros to 64 bytes. */
+  private static final byte[] CONNECTION_BITS = new byte[Long.SIZE];
+
+  static {
+    for (int i = 0; i < PartitionTable.SIZE; i++) {
+      CONNECTION_BITS[i] = (byte) Connection.ALL_A_CONNECTIONS.get(i).bits();
+    }
+  }
+
+  /** Selects bit 0 of each group of 4 comparison bits, one group per partition. */
+  private static final long FIRST_OF_FOUR = 0x1111_1111_1111_1111L;
+
+  VectorScoringKernel() {
+    // Each loop below covers a 64-bit mask in whole vectors. In the second, each long lane
+    // becomes 4 short lanes, and so 4 mask bits.
+    if (Long.SIZE % BYTES.length() != 0 || Long.SIZE % (4 * LONGS.length()) != 0) {
+      throw new UnsupportedOperationException(
+          "Unsuitable vector sizes: " + BYTES.length() + " bytes, " + LONGS.length() + " longs");
+    }
+  }
+
+  @Override
+  public void scoreConnections(int guessBits, long[] masks) {
+    long match = 0;
+    long oneAway = 0;
+    long twoAway = 0;
+    for (int i = 0; i < CONNECTION_BITS.length; i += BYTES.length()) {
+      ByteVector counts =
+          ByteVector.fromArray(BYTES, CONNECTION_BITS, i)
+              .and((byte) guessBits)
+              .lanewise(BIT_COUNT);
+      match |= counts.eq((byte) 0).or(counts.eq((byte) 4)).toLong() << i;
+      oneAway |= counts.eq((byte) 1).or(counts.eq((byte) 3)).toLong() << i;
+      twoAway |= counts.eq((byte) 2).toLong() << i;
+    }
+    masks[0] = match & PartitionTable.ALL;
+    masks[1] = oneAway & PartitionTable.ALL;
+    masks[2] = twoAway & PartitionTable.ALL;
+  }
+
+  @Override
+  public void scorePartitions(
+      long[] partitions, int start, long word, int guessMask, long[] masks) {
+    long match = 0;
+    long oneAway = 0;
+    for (int i = 0; i < Long.SIZE; i += LONGS.length()) {
+      ShortVector counts =
+          LongVector.fromArray(LONGS, partitions, start + i)
+              .reinterpretAsShorts()
+              .and((short) guessMask)
+              .lanewise(BIT_COUNT);
+      match |= perPartition(counts.eq((short) 4).toLong()) << i;
+      oneAway |= perPartition(counts.eq((short) 3).toLong()) << i;
+    }
+    masks[0] = match & word;
+    masks[1] = oneAway & word;
+    masks[2] = ~(match | oneAway) & word;
+  }
+
+  /** Converts a mask with a bit per connection to one with a bit per partition. */
+  private static long perPartition(long laneMask) {
+    long any = laneMask | (laneMask >>> 1) | (laneMask >>> 2) | (laneMask >>> 3);
+    return Long.compress(any, FIRST_OF_FOUR);
+  }
+
+  @Override
+  public String toString() {
+    return "vector";
+  }
+}